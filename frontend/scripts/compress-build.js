@@ -0,0 +1,62 @@
+// Writes a .gz and a .br copy of each text file in build/, for the backend
+// to serve instead of compressing on every request (see
+// StaticResourceConfig).  Files under minSize, and copies that would not be
+// smaller than the original, are skipped.
+//
+// Run by the production maven profile after `npm run build`; to try it by
+// hand:  npm run build && npm run compress
+
+const fs = require("fs");
+const path = require("path");
+const zlib = require("zlib");
+
+const buildDir = path.join(__dirname, "..", "build");
+const minSize = 1024;
+const compressible = /\.(html|js|css|json|svg|txt|map)$/;
+
+const encodings = [
+  {
+    extension: ".gz",
+    compress: (data) => zlib.gzipSync(data, { level: zlib.constants.Z_BEST_COMPRESSION }),
+  },
+  {
+    extension: ".br",
+    compress: (data) =>
+      zlib.brotliCompressSync(data, {
+        params: {
+          [zlib.constants.BROTLI_PARAM_MODE]: zlib.constants.BROTLI_MODE_TEXT,
+          [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+          [zlib.constants.BROTLI_PARAM_SIZE_HINT]: data.length,
+        },
+      }),
+  },
+];
+
+function* files(dir) {
+  for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+    const file = path.join(dir, entry.name);
+    if (entry.isDirectory()) {
+      yield* files(file);
+    } else if (entry.isFile() && compressible.test(entry.name)) {
+      yield file;
+    }
+  }
+}
+
+let original = 0;
+let written = 0;
+for (const file of files(buildDir)) {
+  const data = fs.readFileSync(file);
+  if (data.length < minSize) {
+    continue;
+  }
+  for (const { extension, compress } of encodings) {
+    const compressed = compress(data);
+    if (compressed.length < data.length) {
+      fs.writeFileSync(file + extension, compressed);
+      original += data.length;
+      written += compressed.length;
+    }
+  }
+}
+console.log(`compress-build: wrote ${written} compressed bytes for ${original} bytes of build output`);
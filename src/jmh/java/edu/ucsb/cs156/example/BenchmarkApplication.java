@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import edu.ucsb.cs156.example.services.AdminStatusCache;
+import edu.ucsb.cs156.example.services.CurrentUserServiceImpl;
+import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+
+/**
+ * The persistence and service layers of the application, without the web
+ * server, security or OAuth, running against an in-memory H2 database.
+ * Shared by the benchmarks that need real repositories.
+ */
+@Configuration
+@ImportAutoConfiguration({
+    DataSourceAutoConfiguration.class,
+    DataSourceTransactionManagerAutoConfiguration.class,
+    HibernateJpaAutoConfiguration.class,
+    JdbcTemplateAutoConfiguration.class,
+    JacksonAutoConfiguration.class,
+    TransactionAutoConfiguration.class })
+@EntityScan("edu.ucsb.cs156.example.entities")
+@EnableJpaRepositories("edu.ucsb.cs156.example.repositories")
+@Import({
+    AdminStatusCache.class,
+    CurrentUserServiceImpl.class,
+    GrantedAuthoritiesService.class,
+    NdjsonStreamingService.class })
+public class BenchmarkApplication {
+
+  public static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(BenchmarkApplication.class)
+        .web(WebApplicationType.NONE)
+        .run(
+            "--spring.profiles.active=benchmark",
+            "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--logging.level.root=WARN");
+  }
+}
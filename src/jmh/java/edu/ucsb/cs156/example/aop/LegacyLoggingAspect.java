@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.aop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// LoggingAspect as it was before per-method descriptors were cached:
+// the log line is formatted with String.formatted on every request, the
+// stoplist is an ArrayList, and the meters are looked up on every call.
+// Kept only as the baseline for LoggingAspectBenchmark.
+
+@Slf4j
+@Aspect
+public class LegacyLoggingAspect {
+  // language=PointcutExpression
+  private static final String pointcut = """
+      @annotation(org.springframework.web.bind.annotation.RequestMapping) ||
+      @annotation(org.springframework.web.bind.annotation.GetMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PostMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PutMapping) ||
+      @annotation(org.springframework.web.bind.annotation.DeleteMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PatchMapping)
+      """;
+
+  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  private final Map<Method, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+  @Around(pointcut)
+  public Object logControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    Signature signature = joinPoint.getSignature();
+    getCurrentHttpRequest().ifPresent(
+        request -> {
+          String declaringTypeName = signature.getDeclaringTypeName();
+          if (!stoplist.contains(declaringTypeName)) {
+            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
+                signature.getName(), declaringTypeName));
+          }
+        });
+
+    String controller = signature.getDeclaringType().getSimpleName();
+    String method = signature.getName();
+    AtomicInteger running = inFlight.computeIfAbsent(((MethodSignature) signature).getMethod(),
+        m -> meterRegistry.gauge("controller.in.flight", Tags.of("controller", controller, "method", method),
+            new AtomicInteger()));
+
+    String exception = "none";
+    Timer.Sample sample = Timer.start(meterRegistry);
+    running.incrementAndGet();
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable t) {
+      exception = t.getClass().getSimpleName();
+      Counter.builder("controller.errors")
+          .description("Controller requests that threw an exception")
+          .tags("controller", controller, "method", method, "exception", exception)
+          .register(meterRegistry)
+          .increment();
+      throw t;
+    } finally {
+      running.decrementAndGet();
+      sample.stop(Timer.builder("controller.requests")
+          .description("Controller request latency")
+          .tags("controller", controller, "method", method, "exception", exception)
+          .publishPercentiles(0.5, 0.95, 0.99)
+          .publishPercentileHistogram()
+          .register(meterRegistry));
+    }
+  }
+
+  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
+    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
+        .filter(ServletRequestAttributes.class::isInstance)
+        .map(ServletRequestAttributes.class::cast)
+        .map(ServletRequestAttributes::getRequest);
+  }
+}
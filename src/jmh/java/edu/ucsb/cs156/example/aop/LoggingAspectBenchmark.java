@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.aop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Per-request overhead of LoggingAspect compared with LegacyLoggingAspect.
+ *
+ * Both aspects advise the same trivial controller method through a Spring AOP
+ * proxy, as they do in the running application.  Appenders are detached so
+ * the numbers measure the aspect, not the console; run with
+ * <code>-prof gc</code> to see the allocation rate per request.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="LoggingAspectBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingAspectBenchmark {
+
+  public static class BenchmarkController {
+    @GetMapping("/api/benchmark")
+    public String get() {
+      return "ok";
+    }
+  }
+
+  @Param({ "INFO", "WARN" })
+  String logLevel;
+
+  private BenchmarkController legacy;
+
+  private BenchmarkController current;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+    root.detachAndStopAllAppenders();
+    root.setLevel(ch.qos.logback.classic.Level.toLevel(logLevel));
+
+    LegacyLoggingAspect legacyAspect = new LegacyLoggingAspect();
+    legacyAspect.meterRegistry = new SimpleMeterRegistry();
+    legacy = proxy(legacyAspect);
+
+    LoggingAspect currentAspect = new LoggingAspect();
+    currentAspect.meterRegistry = new SimpleMeterRegistry();
+    current = proxy(currentAspect);
+
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/benchmark");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private static BenchmarkController proxy(Object aspect) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(new BenchmarkController());
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    return factory.getProxy();
+  }
+
+  @Benchmark
+  public String legacyAspect() {
+    return legacy.get();
+  }
+
+  @Benchmark
+  public String loggingAspect() {
+    return current.get();
+  }
+}
@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encode and decode time of a list of entities (as returned by an /all
+ * endpoint) in JSON, Smile and CBOR, using mappers configured like
+ * BinaryFormatsConfig's.  The size of each payload is printed at the start
+ * of its trial.  The list repeats one entity, which flatters Smile: it
+ * back-references repeated strings, values included, so real lists shrink
+ * less than these do.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="BinaryFormatBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+  @Param({ "Article", "HelpRequest", "MenuItemReview", "Recommendation", "UCSBDate",
+      "UCSBDiningCommons", "UCSBDiningCommonsMenuItem", "UCSBOrganization", "User" })
+  String entity;
+
+  @Param({ "json", "smile", "cbor" })
+  String format;
+
+  @Param({ "1", "100" })
+  int count;
+
+  private List<Object> sample;
+
+  private ObjectWriter writer;
+
+  private ObjectReader reader;
+
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+    if (format.equals("smile")) {
+      builder.factory(new SmileFactory());
+    } else if (format.equals("cbor")) {
+      builder.factory(new CBORFactory());
+    }
+    ObjectMapper mapper = builder.build();
+
+    Object one = EntitySerializationBenchmark.SAMPLES.get(entity);
+    sample = Collections.nCopies(count, one);
+    CollectionType type = mapper.getTypeFactory().constructCollectionType(List.class, one.getClass());
+    writer = mapper.writerFor(type);
+    reader = mapper.readerFor(type);
+    encoded = writer.writeValueAsBytes(sample);
+    System.out.printf("%n%s x %d as %s: %d bytes%n", entity, count, format, encoded.length);
+  }
+
+  @Benchmark
+  public byte[] encode() throws Exception {
+    return writer.writeValueAsBytes(sample);
+  }
+
+  @Benchmark
+  public Object decode() throws Exception {
+    return reader.readValue(encoded);
+  }
+}
@@ -0,0 +1,147 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Cost of writing one entity to JSON and reading it back, using an
+ * ObjectMapper configured the way Spring Boot configures the application's.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="EntitySerializationBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntitySerializationBenchmark {
+
+  private static final LocalDateTime DATE = LocalDateTime.parse("2022-04-20T12:00:00");
+
+  static final Map<String, Object> SAMPLES = Map.of(
+      "Article", Article.builder()
+          .id(1L)
+          .title("Using testing-playground with React Testing Library")
+          .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+          .explanation("Helpful when we get to front end development")
+          .email("phtcon@ucsb.edu")
+          .dateAdded(DATE)
+          .build(),
+      "HelpRequest", HelpRequest.builder()
+          .id(1L)
+          .requesterEmail("cgaucho@ucsb.edu")
+          .teamId("f22-7pm-3")
+          .tableOrBreakoutRoom("7")
+          .requestTime(DATE)
+          .explanation("Need help with Swagger-ui")
+          .solved(false)
+          .build(),
+      "MenuItemReview", MenuItemReview.builder()
+          .itemId(1L)
+          .reviewerEmail("cgaucho@ucsb.edu")
+          .stars(4)
+          .dateReviewed(DATE)
+          .comments("Tasty, but the portion was small")
+          .build(),
+      "Recommendation", Recommendation.builder()
+          .id(1L)
+          .requesterEmail("cgaucho@ucsb.edu")
+          .professorEmail("phtcon@ucsb.edu")
+          .explanation("BS/MS program")
+          .dateRequested(DATE)
+          .dateNeeded(DATE.plusMonths(1))
+          .done(false)
+          .build(),
+      "UCSBDate", UCSBDate.builder()
+          .id(1L)
+          .quarterYYYYQ("20222")
+          .name("firstDayOfClasses")
+          .localDateTime(DATE)
+          .build(),
+      "UCSBDiningCommons", UCSBDiningCommons.builder()
+          .code("de-la-guerra")
+          .name("De La Guerra")
+          .hasSackMeal(false)
+          .hasTakeOutMeal(false)
+          .hasDiningCam(true)
+          .latitude(34.409811)
+          .longitude(-119.845026)
+          .build(),
+      "UCSBDiningCommonsMenuItem", UCSBDiningCommonsMenuItem.builder()
+          .id(1L)
+          .diningCommonsCode("ortega")
+          .name("Baked Pesto Pasta with Chicken")
+          .station("Entree Specials")
+          .build(),
+      "UCSBOrganization", UCSBOrganization.builder()
+          .orgCode("ZPR")
+          .orgTranslationShort("ZETA PHI RHO")
+          .orgTranslation("ZETA PHI RHO")
+          .inactive(false)
+          .build(),
+      "User", User.builder()
+          .id(1L)
+          .email("cgaucho@ucsb.edu")
+          .googleSub("115856948234298493496")
+          .pictureUrl("https://lh3.googleusercontent.com/a/photo.jpg")
+          .fullName("Chris Gaucho")
+          .givenName("Chris")
+          .familyName("Gaucho")
+          .emailVerified(true)
+          .locale("en")
+          .hostedDomain("ucsb.edu")
+          .admin(false)
+          .build());
+
+  @Param({ "Article", "HelpRequest", "MenuItemReview", "Recommendation", "UCSBDate",
+      "UCSBDiningCommons", "UCSBDiningCommonsMenuItem", "UCSBOrganization", "User" })
+  String entity;
+
+  private Object sample;
+
+  private ObjectWriter writer;
+
+  private ObjectReader reader;
+
+  private byte[] json;
+
+  @Setup
+  public void setup() throws Exception {
+    ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    sample = SAMPLES.get(entity);
+    writer = mapper.writerFor(sample.getClass());
+    reader = mapper.readerFor(sample.getClass());
+    json = writer.writeValueAsBytes(sample);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws Exception {
+    return writer.writeValueAsBytes(sample);
+  }
+
+  @Benchmark
+  public Object deserialize() throws Exception {
+    return reader.readValue(json);
+  }
+}
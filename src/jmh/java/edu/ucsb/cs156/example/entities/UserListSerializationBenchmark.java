@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Writing the /api/admin/users list, with and without the Blackbird module
+ * that JacksonConfig registers, both the way UsersController used to
+ * (writeValueAsString, then the String encoded onto the response) and the
+ * way the message converter does now (straight onto the response stream).
+ * Run with <code>-prof gc</code> to see the allocation the String costs.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="UserListSerializationBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserListSerializationBenchmark {
+
+  @Param({ "reflection", "blackbird" })
+  String accessors;
+
+  @Param({ "10", "1000" })
+  int count;
+
+  private final OutputStream response = OutputStream.nullOutputStream();
+
+  private List<User> users;
+
+  private ObjectWriter writer;
+
+  @Setup
+  public void setup() {
+    Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+    if (accessors.equals("blackbird")) {
+      builder.modulesToInstall(new BlackbirdModule());
+    }
+    ObjectMapper mapper = builder.build();
+    writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, User.class));
+
+    users = new ArrayList<>();
+    for (long id = 1; id <= count; id++) {
+      users.add(User.builder()
+          .id(id)
+          .email("user%d@ucsb.edu".formatted(id))
+          .googleSub(Long.toString(115856948234298493L + id))
+          .pictureUrl("https://lh3.googleusercontent.com/a/photo%d.jpg".formatted(id))
+          .fullName("User %d".formatted(id))
+          .givenName("User")
+          .familyName(Long.toString(id))
+          .emailVerified(true)
+          .locale("en")
+          .hostedDomain("ucsb.edu")
+          .admin(id % 10 == 0)
+          .build());
+    }
+  }
+
+  @Benchmark
+  public void viaString() throws Exception {
+    String body = writer.writeValueAsString(users);
+    response.write(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public void streamed() throws Exception {
+    // as MappingJackson2HttpMessageConverter does, so Jackson doesn't close it
+    writer.writeValue(StreamUtils.nonClosing(response), users);
+  }
+}
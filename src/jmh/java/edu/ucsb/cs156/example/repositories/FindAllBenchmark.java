@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.BenchmarkApplication;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+
+/**
+ * The GET /api/MenuItemReview/all write path against an in-memory H2 database
+ * seeded with 1k, 100k and 1M reviews: findAll followed by Jackson writing
+ * the whole list, compared with the NDJSON streaming path.  Output goes to
+ * a null stream, so the numbers exclude the network.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="FindAllBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FindAllBenchmark {
+
+  private static final int INSERT_BATCH = 10_000;
+
+  @Param({ "1000", "100000", "1000000" })
+  int rows;
+
+  private ConfigurableApplicationContext context;
+
+  private MenuItemReviewRepository menuItemReviewRepository;
+
+  private NdjsonStreamingService ndjsonStreamingService;
+
+  private ObjectMapper mapper;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkApplication.start();
+    menuItemReviewRepository = context.getBean(MenuItemReviewRepository.class);
+    ndjsonStreamingService = context.getBean(NdjsonStreamingService.class);
+    mapper = context.getBean(ObjectMapper.class);
+    seed(context.getBean(JdbcTemplate.class), rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  static void seed(JdbcTemplate jdbcTemplate, int rows) {
+    Timestamp dateReviewed = Timestamp.valueOf(LocalDateTime.parse("2022-04-20T12:00:00"));
+    List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+    for (int i = 1; i <= rows; i++) {
+      batch.add(new Object[] { i, "reviewer" + (i % 500) + "@ucsb.edu", 1 + i % 5, dateReviewed,
+          "Review number " + i });
+      if (batch.size() == INSERT_BATCH || i == rows) {
+        jdbcTemplate.batchUpdate(
+            "insert into menuitemreviews (item_id, reviewer_email, stars, date_reviewed, comments) values (?, ?, ?, ?, ?)",
+            batch);
+        batch.clear();
+      }
+    }
+  }
+
+  @Benchmark
+  public void findAllThenWriteJson() throws Exception {
+    mapper.writeValue(OutputStream.nullOutputStream(), menuItemReviewRepository.findAll());
+  }
+
+  @Benchmark
+  public void streamAllAsNdjson() throws Exception {
+    ndjsonStreamingService.stream(menuItemReviewRepository::streamAll)
+        .getBody()
+        .writeTo(OutputStream.nullOutputStream());
+  }
+}
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import edu.ucsb.cs156.example.BenchmarkApplication;
+import edu.ucsb.cs156.example.entities.User;
+
+/**
+ * Login throughput when many users log in for the first time at once:
+ * eight threads call CurrentUserServiceImpl.getOAuth2AuthenticatedUser with
+ * a stream of new emails.  With <code>loginsPerEmail=4</code>, four
+ * consecutive logins share an email, so threads regularly race to create
+ * the same user and the losers take the unique index fallback.
+ *
+ * <pre>
+ * mvn -Plocalhost,jmh test-compile exec:exec -Djmh.args="FirstLoginBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(1)
+public class FirstLoginBenchmark {
+
+  @Param({ "1", "4" })
+  int loginsPerEmail;
+
+  private final AtomicLong logins = new AtomicLong();
+
+  private ConfigurableApplicationContext context;
+
+  private CurrentUserServiceImpl currentUserService;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = BenchmarkApplication.start();
+    currentUserService = context.getBean(CurrentUserServiceImpl.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public User firstLogin() {
+    long user = logins.getAndIncrement() / loginsPerEmail;
+    String email = "user%d@ucsb.edu".formatted(user);
+    Map<String, Object> attributes = Map.of(
+        "sub", Long.toString(user),
+        "email", email,
+        "name", "User " + user,
+        "given_name", "User",
+        "family_name", Long.toString(user),
+        "email_verified", true,
+        "locale", "en",
+        "hd", "ucsb.edu",
+        "picture", "https://lh3.googleusercontent.com/a/photo.jpg");
+    List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, attributes, "email");
+    return currentUserService.getOAuth2AuthenticatedUser(null,
+        new OAuth2AuthenticationToken(principal, authorities, "google"));
+  }
+}
@@ -1,19 +1,43 @@
 package edu.ucsb.cs156.example.aop;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Logs every controller request and records, per controller method:
+//
+//   controller.requests   timer with p50/p95/p99 and a percentile histogram
+//                         (tagged with the exception name, or "none")
+//   controller.errors     count of requests that threw
+//   controller.in.flight  gauge of requests currently executing
+//
+// All three are tagged with controller and method; see /actuator/metrics
+// and /actuator/prometheus.
+//
+// Everything that depends only on the handler method (log text, tags, meters)
+// is built once per method and cached, so the per-request cost is a map
+// lookup plus the timer; the log message is only formatted if INFO is on.
+// For asynchronous log output, see src/main/resources/logback-async.xml.
 
 @Slf4j
 @Aspect
@@ -29,25 +53,71 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
-  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
-      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
-
-  @Before(pointcut)
-  public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
+  private static final Set<String> stoplist = Set.of(
+      "edu.ucsb.cs156.example.controllers.FrontendProxyController");
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  // Spring AOP creates a new Signature for every call, so descriptors are
+  // keyed by the handler Method the signature refers to.
+  private final Map<Method, Descriptor> descriptors = new ConcurrentHashMap<>();
+
+  @Around(pointcut)
+  public Object logControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    Descriptor descriptor = descriptors.computeIfAbsent(
+        ((MethodSignature) joinPoint.getSignature()).getMethod(), this::describe);
+
+    if (descriptor.logged() && log.isInfoEnabled()) {
+      RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+      if (attributes instanceof ServletRequestAttributes servletAttributes) {
+        HttpServletRequest request = servletAttributes.getRequest();
+        log.info("===== {} {} handled by {}", request.getMethod(), request.getRequestURI(), descriptor.handler());
+      }
+    }
+
+    long start = meterRegistry.config().clock().monotonicTime();
+    descriptor.inFlight().incrementAndGet();
+    try {
+      Object result = joinPoint.proceed();
+      descriptor.timer().record(meterRegistry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+      return result;
+    } catch (Throwable t) {
+      String exception = t.getClass().getSimpleName();
+      Counter.builder("controller.errors")
+          .description("Controller requests that threw an exception")
+          .tags(descriptor.tags().and("exception", exception))
+          .register(meterRegistry)
+          .increment();
+      requestTimer(descriptor.tags().and("exception", exception))
+          .record(meterRegistry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+      throw t;
+    } finally {
+      descriptor.inFlight().decrementAndGet();
+    }
+  }
+
+  private Descriptor describe(Method method) {
+    Class<?> controller = method.getDeclaringClass();
+    Tags tags = Tags.of("controller", controller.getSimpleName(), "method", method.getName());
+    AtomicInteger inFlight = meterRegistry.gauge("controller.in.flight", tags, new AtomicInteger());
+    return new Descriptor(
+        "%s in %s".formatted(method.getName(), controller.getName()),
+        !stoplist.contains(controller.getName()),
+        tags,
+        inFlight,
+        requestTimer(tags.and("exception", "none")));
+  }
+
+  private Timer requestTimer(Tags tags) {
+    return Timer.builder("controller.requests")
+        .description("Controller request latency")
+        .tags(tags)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
   }
 
-  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
-    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
-        .filter(ServletRequestAttributes.class::isInstance)
-        .map(ServletRequestAttributes.class::cast)
-        .map(ServletRequestAttributes::getRequest);
+  private record Descriptor(String handler, boolean logged, Tags tags, AtomicInteger inFlight, Timer timer) {
   }
 }
@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary encodings of the API's JSON, for service-to-service clients that
+ * would rather not spend CPU on text: a request with
+ * <code>Accept: application/x-jackson-smile</code> or
+ * <code>Accept: application/cbor</code> gets its response in Smile or CBOR,
+ * and request bodies may be sent in either with the matching Content-Type.
+ * JSON stays the default.
+ *
+ * Spring MVC adds converters for both formats by itself once the jackson
+ * dataformat jars are present, but with plain Jackson settings; these
+ * replace them with mappers from Spring Boot's Jackson2ObjectMapperBuilder,
+ * so the binary representations carry exactly the same fields and values as
+ * the JSON one (ISO dates, the same modules, ...).
+ */
+@Configuration
+public class BinaryFormatsConfig {
+  public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+  public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+  }
+
+  @Bean
+  public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+    return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+  }
+
+  /**
+   * The binary format that an Accept header selects, or null if it selects
+   * JSON (or cannot be parsed).  JSON wins any tie, as it does in Spring
+   * MVC's content negotiation, where its converter comes first.
+   */
+  public static MediaType requestedBinaryFormat(String accept) {
+    if (accept == null) {
+      return null;
+    }
+    List<MediaType> requested;
+    try {
+      requested = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MediaType.sortBySpecificityAndQuality(requested);
+    for (MediaType type : requested) {
+      if (type.getQualityValue() == 0) {
+        continue;
+      }
+      if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+        return null;
+      }
+      if (type.equalsTypeAndSubtype(SMILE)) {
+        return SMILE;
+      }
+      if (type.equalsTypeAndSubtype(CBOR)) {
+        return CBOR;
+      }
+    }
+    return null;
+  }
+}
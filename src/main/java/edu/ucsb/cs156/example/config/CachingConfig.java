@@ -0,0 +1,69 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.repository.CrudRepository;
+
+import edu.ucsb.cs156.example.services.TableVersionService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Read-through caching of small reference tables, using the Caffeine caches
+ * named in <code>spring.cache.cache-names</code>.
+ *
+ * The repositories declare what is cached: UCSBDiningCommonsRepository and
+ * UCSBOrganizationRepository cache findById and findAll, and every write
+ * through them clears the whole cache (see EvictAllEntries).  The caches
+ * are per instance, and another instance's writes do not clear them, so
+ * entries are also keyed by the table's version (see tableVersionKeys).
+ *
+ * Spring Boot publishes cache.gets{result=hit|miss}, cache.puts and
+ * cache.evictions for each cache; cache.hit.ratio is added here.
+ */
+@Configuration
+@EnableCaching
+public class CachingConfig {
+  public static final String UCSB_DINING_COMMONS = "ucsbDiningCommons";
+  public static final String UCSB_ORGANIZATIONS = "ucsbOrganizations";
+  public static final String TABLE_VERSION_KEYS = "tableVersionKeys";
+
+  /**
+   * Keys a repository read by its table's version (see TableVersionService)
+   * as well as its arguments.  Every write through the API bumps the
+   * version, on whichever instance makes it, so a read after the bump misses
+   * the entries cached before it and loads the new rows; the old entries
+   * are left to expire.
+   *
+   * The version is read before the rows, so an entry is never older than
+   * its key, and a body read from the cache is never older than an ETag
+   * read before it.
+   */
+  @Bean(TABLE_VERSION_KEYS)
+  public KeyGenerator tableVersionKeys(TableVersionService tableVersionService) {
+    return (target, method, params) -> {
+      Class<?> entity = GenericTypeResolver.resolveTypeArguments(method.getDeclaringClass(), CrudRepository.class)[0];
+      return new SimpleKey(tableVersionService.getVersion(entity), SimpleKeyGenerator.generateKey(params));
+    };
+  }
+
+  @Bean
+  public MeterBinder cacheHitRatio(CacheManager cacheManager) {
+    return registry -> cacheManager.getCacheNames().forEach(name -> {
+      if (cacheManager.getCache(name) instanceof CaffeineCache cache) {
+        Gauge.builder("cache.hit.ratio", cache.getNativeCache(), caffeine -> caffeine.stats().hitRate())
+            .tag("cache", name)
+            .description("Fraction of lookups found in the cache since startup")
+            .register(registry);
+      }
+    });
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.cache.annotation.CacheEvict;
+
+/**
+ * Clears the caches named by the class's @CacheConfig once a write
+ * succeeds, so the next read on this instance sees the new rows even if
+ * the table's version is not bumped (see CachingConfig.tableVersionKeys).
+ *
+ * It does not protect the cached entities themselves: they are shared by
+ * every caller and must never be changed, so code that updates a row loads
+ * it past the cache (e.g. UCSBDiningCommonsRepository.findUncachedByCode).
+ * A read that overlaps the write may still put the old row back, and the
+ * caches of other instances are not cleared at all; either way the old row
+ * is keyed by the version from before the write, which no read after its
+ * bump uses.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@CacheEvict(allEntries = true)
+public @interface EvictAllEntries {
+}
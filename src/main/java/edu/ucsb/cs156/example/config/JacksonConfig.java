@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * Spring Boot registers every Jackson Module bean with its
+ * Jackson2ObjectMapperBuilder, so this one reaches the application's
+ * ObjectMapper, the JSON message converter and the Smile and CBOR
+ * converters in BinaryFormatsConfig alike, without giving up Boot's own
+ * settings as a hand-built ObjectMapper bean would.
+ *
+ * Blackbird replaces Jackson's reflective getter, setter and constructor
+ * calls with lambdas generated through LambdaMetafactory, which the JIT
+ * can inline; unlike Afterburner it needs no bytecode library and works
+ * on Java 17 without opening modules.
+ */
+@Configuration
+public class JacksonConfig {
+
+  @Bean
+  public Module blackbirdModule() {
+    return new BlackbirdModule();
+  }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+/**
+ * Caching and compression for the React build, which the production profile
+ * copies to <code>classpath:/public</code> along with the .br and .gz copies
+ * written by <code>frontend/scripts/compress-build.js</code>.
+ *
+ * Everything under /static has a content hash in its name, so a new build
+ * never changes an existing file; browsers and proxies may keep those for a
+ * year without asking again.  The other files (index.html, manifest.json,
+ * ...) keep their names across builds and are served by Spring Boot's
+ * default handler, which application.properties sets to no-cache, so they
+ * are revalidated with Last-Modified on every load.
+ *
+ * Both handlers send the .br or .gz copy when the request's Accept-Encoding
+ * allows it; Tomcat compression does not touch a response that already has
+ * a Content-Encoding.
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+  public static final Duration HASHED_ASSET_MAX_AGE = Duration.ofDays(365);
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    registry.addResourceHandler("/static/**")
+        .addResourceLocations("classpath:/public/static/")
+        .setCacheControl(CacheControl.maxAge(HASHED_ASSET_MAX_AGE).cachePublic())
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver());
+  }
+}
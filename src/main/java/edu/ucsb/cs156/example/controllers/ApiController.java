@@ -1,23 +1,37 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.config.BinaryFormatsConfig;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletResponse;
 
 import java.util.Map;
 
 @Slf4j
 public abstract class ApiController {
+  /** Upper bound on the <code>limit</code> of a keyset paginated listing */
+  protected static final int MAX_PAGE_SIZE = 1000;
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private TableVersionService tableVersionService;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -26,6 +40,36 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  protected static int pageSize(int limit) {
+    return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+  }
+
+  /**
+   * Conditional GET for a response built only from <code>entity</code>'s
+   * table: sets an ETag from the table's version (see TableVersionService),
+   * and returns true if the request's If-None-Match already has it.  The
+   * status is then 304 Not Modified, and the handler should return null
+   * without reading the table.  Otherwise it may read the table through a
+   * cache only if the cache is keyed by the table's version too (see
+   * CachingConfig.tableVersionKeys).
+   *
+   * JSON, Smile and CBOR (see BinaryFormatsConfig) each get their own ETag,
+   * so a cache never answers a request for one with a body in another.
+   */
+  protected boolean notModified(ServletWebRequest webRequest, Class<?> entity) {
+    HttpServletResponse response = webRequest.getResponse();
+    if (response != null) {
+      // let clients keep the body and revalidate it, rather than Spring Security's no-store
+      response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+    MediaType binaryFormat = BinaryFormatsConfig.requestedBinaryFormat(webRequest.getHeader(HttpHeaders.ACCEPT));
+    String etag = binaryFormat == null
+        ? tableVersionService.etag(entity)
+        : tableVersionService.etag(entity, binaryFormat.getSubtype());
+    return webRequest.checkNotModified(etag);
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -34,4 +78,14 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ BatchValidationException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBatchValidationException(BatchValidationException e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage(),
+      "errors", e.getErrors()
+    );
+  }
 }
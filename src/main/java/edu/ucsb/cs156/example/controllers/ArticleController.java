@@ -3,20 +3,35 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.ArticleSearchService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Api(description = "Article")
 @RequestMapping("/api/Article")
@@ -27,16 +42,61 @@ public class ArticleController extends ApiController {
     @Autowired
     ArticleRepository articleRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
+    @Autowired
+    ArticleSearchService articleSearchService;
+
     @ApiOperation(value = "Get a JSON list of all articles in the database.")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Article> allArticles() {
+    public Iterable<Article> allArticles(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Article.class)) {
+            return null;
+        }
         return articleRepository.findAll();
     }
 
+    @ApiOperation(value = "List articles one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<Article, Long> pageOfArticles(
+            @ApiParam("only list articles after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of articles to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Article.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<Article> rows = articleRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, Article::getId);
+    }
+
+    @ApiOperation(value = "Stream all articles as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamArticles() {
+        return ndjsonStreamingService.stream(articleRepository::streamAll);
+    }
+
+    @ApiOperation(value = "Search article titles and explanations for any of the words in q, best match first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public Slice<Article> searchArticles(
+            @ApiParam("words to search for") @RequestParam String q,
+            @ApiParam("page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("maximum number of articles to return") @RequestParam(defaultValue = "20") int limit) {
+        return articleSearchService.search(q, PageRequest.of(Math.max(page, 0), pageSize(limit)));
+    }
+
     @ApiOperation(value = "Create a new article.")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
+    @Transactional
     public Article postArticle(
             @ApiParam("title") @RequestParam String title,
             @ApiParam("url") @RequestParam String url,
@@ -46,7 +106,7 @@ public class ArticleController extends ApiController {
             throws JsonProcessingException {
         log.info("title={}, url={}, explanation={}, email={}, dateAdded={}", title, url, explanation, email, dateAdded);
 
-        return articleRepository.save(
+        Article saved = articleRepository.save(
                 Article.builder()
                         .title(title)
                         .url(url)
@@ -54,13 +114,40 @@ public class ArticleController extends ApiController {
                         .email(email)
                         .dateAdded(dateAdded)
                         .build());
+        tableVersionService.bumped(Article.class);
+        articleSearchService.articleAdded(saved);
+        return saved;
+    }
+
+    // POST many
+    @ApiOperation(value = "Create many articles in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<Article> postArticles(
+            @ApiParam("JSON array of articles; ids are ignored") @RequestBody List<Article> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "title", Article::getTitle,
+                "url", Article::getUrl,
+                "explanation", Article::getExplanation,
+                "email", Article::getEmail,
+                "dateAdded", Article::getDateAdded));
+        incoming.forEach(article -> article.setId(0));
+        Iterable<Article> saved = articleRepository.saveAll(incoming);
+        tableVersionService.bumped(Article.class);
+        articleSearchService.articlesAdded(saved);
+        return saved;
     }
 
     @ApiOperation(value = "Retrieve an article by its ID.")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public Article getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Article.class)) {
+            return null;
+        }
         return articleRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
     }
@@ -68,6 +155,7 @@ public class ArticleController extends ApiController {
     @ApiOperation(value = "Update an article by its ID.")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
+    @Transactional
     public Article updateArticle(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid Article incoming) {
@@ -82,6 +170,8 @@ public class ArticleController extends ApiController {
 
 
         articleRepository.save(article);
+        tableVersionService.bumped(Article.class);
+        articleSearchService.articleChanged(article);
 
         return article;
     }
@@ -89,12 +179,15 @@ public class ArticleController extends ApiController {
     @ApiOperation(value = "Delete an article by its ID.")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteArticle(
             @ApiParam("id") @RequestParam Long id) {
         Article article = articleRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
 
         articleRepository.delete(article);
+        tableVersionService.bumped(Article.class);
+        articleSearchService.articleRemoved(article);
         return genericMessage("Article with id %s deleted".formatted(id));
     }
 }
@@ -1,15 +1,27 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.HelpRequestChange;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestEventService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,8 +30,13 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -33,14 +50,84 @@ public class HelpRequestController extends ApiController {
     @Autowired
     HelpRequestRepository helpRequestRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
+    @Autowired
+    HelpRequestEventService helpRequestEventService;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     @ApiOperation(value = "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<HelpRequest> allRequests() {
+    public Iterable<HelpRequest> allRequests(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
         Iterable<HelpRequest> request = helpRequestRepository.findAll();
         return request;
     }
 
+    @ApiOperation(value = "List help requests one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<HelpRequest, Long> pageOfRequests(
+            @ApiParam("only list help requests after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of help requests to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<HelpRequest> rows = helpRequestRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, HelpRequest::getId);
+    }
+
+    @ApiOperation(value = "Stream all help requests as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRequests() {
+        return ndjsonStreamingService.stream(helpRequestRepository::streamAll);
+    }
+
+    @ApiOperation(value = "Server-Sent Events: one JSON HelpRequestChange (type CREATED, UPDATED or DELETED, and the help request) per change")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return helpRequestEventService.subscribe();
+    }
+
+    @ApiOperation(value = "List unsolved help requests, oldest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/queue")
+    public Iterable<HelpRequest> openQueue() {
+        return helpRequestRepository.findBySolvedFalseOrderByRequestTimeAscIdAsc();
+    }
+
+    @ApiOperation(value = "Claim the oldest unsolved help request that nobody has claimed yet; 204 No Content if there is none")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/claimNext")
+    @Transactional
+    public ResponseEntity<HelpRequest> claimNext() {
+        List<HelpRequest> next = helpRequestRepository.findUnclaimedForUpdate(PageRequest.of(0, 1));
+        if (next.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+
+        HelpRequest request = next.get(0);
+        request.setClaimedBy(getCurrentUser().getUser().getEmail());
+        helpRequestRepository.save(request);
+        tableVersionService.bumped(HelpRequest.class);
+        publish(HelpRequestChange.Type.UPDATED, request);
+
+        return ResponseEntity.ok(request);
+    }
+
     @ApiOperation(value = "Create a new help request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @PostMapping("/post")
@@ -63,15 +150,41 @@ public class HelpRequestController extends ApiController {
         request.setSolved(solved);
 
         HelpRequest savedRequest = helpRequestRepository.save(request);
+        tableVersionService.bumped(HelpRequest.class);
+        publish(HelpRequestChange.Type.CREATED, savedRequest);
 
         return savedRequest;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many help requests in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<HelpRequest> postRequests(
+            @ApiParam("JSON array of help requests; ids are ignored") @RequestBody List<HelpRequest> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "requesterEmail", HelpRequest::getRequesterEmail,
+                "teamId", HelpRequest::getTeamId,
+                "tableOrBreakoutRoom", HelpRequest::getTableOrBreakoutRoom,
+                "requestTime", HelpRequest::getRequestTime,
+                "explanation", HelpRequest::getExplanation));
+        incoming.forEach(helpRequest -> helpRequest.setId(0));
+        Iterable<HelpRequest> saved = helpRequestRepository.saveAll(incoming);
+        tableVersionService.bumped(HelpRequest.class);
+        saved.forEach(helpRequest -> publish(HelpRequestChange.Type.CREATED, helpRequest));
+        return saved;
+    }
+
     @ApiOperation(value = "Get a single help request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public HelpRequest getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, HelpRequest.class)) {
+            return null;
+        }
         HelpRequest request = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
@@ -96,6 +209,8 @@ public class HelpRequestController extends ApiController {
         request.setSolved(incoming.getSolved());
 
         helpRequestRepository.save(request);
+        tableVersionService.bumped(HelpRequest.class);
+        publish(HelpRequestChange.Type.UPDATED, request);
 
         return request;
     }
@@ -109,6 +224,12 @@ public class HelpRequestController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
         helpRequestRepository.delete(request);
+        tableVersionService.bumped(HelpRequest.class);
+        publish(HelpRequestChange.Type.DELETED, request);
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
+
+    private void publish(HelpRequestChange.Type type, HelpRequest request) {
+        eventPublisher.publishEvent(new HelpRequestChange(type, request));
+    }
 }
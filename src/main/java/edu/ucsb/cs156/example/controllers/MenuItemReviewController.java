@@ -1,18 +1,31 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.ReviewRollup;
+import edu.ucsb.cs156.example.models.RollupBucket;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,10 +34,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Api(description = "MenuItemReviews")
 @RequestMapping("/api/MenuItemReview")
@@ -35,21 +52,78 @@ public class MenuItemReviewController extends ApiController {
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
+    @Autowired
+    MenuItemReviewStatsService menuItemReviewStatsService;
+
     // GET all
     @ApiOperation(value = "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allMenuItemReviews() {
+    public Iterable<MenuItemReview> allMenuItemReviews(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
         Iterable<MenuItemReview> reviews = menuItemReviewRepository.findAll();
         return reviews;
     }
 
+    @ApiOperation(value = "List menu item reviews one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<MenuItemReview, Long> pageOfMenuItemReviews(
+            @ApiParam("only list menu item reviews after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of menu item reviews to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<MenuItemReview> rows = menuItemReviewRepository.findByItemIdGreaterThanOrderByItemIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, MenuItemReview::getItemId);
+    }
+
+    @ApiOperation(value = "Stream all menu item reviews as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMenuItemReviews() {
+        return ndjsonStreamingService.stream(menuItemReviewRepository::streamAll);
+    }
+
+    // GET stats
+    @ApiOperation(value = "Number of menu item reviews, average stars and how many reviews gave each number of stars")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats")
+    public MenuItemReviewStats menuItemReviewStats() {
+        return menuItemReviewStatsService.getStats();
+    }
+
+    // GET rollup
+    @ApiOperation(value = "Number of menu item reviews and average stars per day or week, for reviews from 'from' up to (not including) 'to'")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/rollup")
+    public List<ReviewRollup> menuItemReviewRollup(
+            @ApiParam("start of the range (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @ApiParam("end of the range, not included (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @ApiParam("DAY or WEEK; weeks start on Monday") @RequestParam(name = "bucket", defaultValue = "DAY") RollupBucket bucket) {
+        return menuItemReviewStatsService.getRollup(from, to, bucket);
+    }
+
     // GET single review
     @ApiOperation(value = "Get a single menu item review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public MenuItemReview getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, MenuItemReview.class)) {
+            return null;
+        }
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
@@ -60,6 +134,7 @@ public class MenuItemReviewController extends ApiController {
     @ApiOperation(value = "Create a new review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
+    @Transactional
     public MenuItemReview postMenuItemReview(
             @ApiParam("reviewerEmail") @RequestParam String reviewerEmail,
             @ApiParam("stars") @RequestParam int stars,
@@ -80,20 +155,43 @@ public class MenuItemReviewController extends ApiController {
         menuItemReview.setComments(comments);
 
         MenuItemReview savedMenuItemReview = menuItemReviewRepository.save(menuItemReview);
+        tableVersionService.bumped(MenuItemReview.class);
+        menuItemReviewStatsService.reviewAdded(savedMenuItemReview);
 
         return savedMenuItemReview;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many menu item reviews in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<MenuItemReview> postMenuItemReviews(
+            @ApiParam("JSON array of menu item reviews; ids are ignored") @RequestBody List<MenuItemReview> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "reviewerEmail", MenuItemReview::getReviewerEmail,
+                "comments", MenuItemReview::getComments,
+                "dateReviewed", MenuItemReview::getDateReviewed));
+        incoming.forEach(menuItemReview -> menuItemReview.setItemId(0));
+        Iterable<MenuItemReview> saved = menuItemReviewRepository.saveAll(incoming);
+        tableVersionService.bumped(MenuItemReview.class);
+        menuItemReviewStatsService.reviewsAdded(saved);
+        return saved;
+    }
+
     // DELETE
     @ApiOperation(value = "Delete a MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteMenuItemReview(
             @ApiParam("id") @RequestParam Long id) {
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
         menuItemReviewRepository.delete(menuItemReview);
+        tableVersionService.bumped(MenuItemReview.class);
+        menuItemReviewStatsService.reviewRemoved(menuItemReview);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 
@@ -101,6 +199,7 @@ public class MenuItemReviewController extends ApiController {
     @ApiOperation(value = "Update a single MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
+    @Transactional
     public MenuItemReview updateMenuItemReview(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid MenuItemReview incoming) {
@@ -108,12 +207,18 @@ public class MenuItemReviewController extends ApiController {
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
+        MenuItemReview before = MenuItemReview.builder()
+                .stars(menuItemReview.getStars())
+                .dateReviewed(menuItemReview.getDateReviewed())
+                .build();
         menuItemReview.setReviewerEmail(incoming.getReviewerEmail());
         menuItemReview.setStars(incoming.getStars());
         menuItemReview.setDateReviewed(incoming.getDateReviewed());
         menuItemReview.setComments(incoming.getComments());
 
         menuItemReviewRepository.save(menuItemReview);
+        tableVersionService.bumped(MenuItemReview.class);
+        menuItemReviewStatsService.reviewChanged(before, menuItemReview);
 
         return menuItemReview;
     }
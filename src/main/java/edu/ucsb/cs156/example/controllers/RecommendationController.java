@@ -1,18 +1,30 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DeadlineCursor;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.RecommendationInbox;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.RecommendationCountsService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,10 +33,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Api(description = "Recommendation Requests")
 @RequestMapping("/api/Recommendation")
@@ -35,20 +51,88 @@ public class RecommendationController extends ApiController {
     @Autowired
     RecommendationRepository recommendationRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
+    @Autowired
+    RecommendationCountsService recommendationCountsService;
+
     @ApiOperation(value = "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Recommendation> allRecommendations() {
+    public Iterable<Recommendation> allRecommendations(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Recommendation.class)) {
+            return null;
+        }
         Iterable<Recommendation> recommendations = recommendationRepository.findAll();
         return recommendations;
     }
 
+    @ApiOperation(value = "List recommendation requests one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<Recommendation, Long> pageOfRecommendations(
+            @ApiParam("only list recommendation requests after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of recommendation requests to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Recommendation.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<Recommendation> rows = recommendationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, Recommendation::getId);
+    }
+
+    @ApiOperation(value = "Stream all recommendation requests as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecommendations() {
+        return ndjsonStreamingService.stream(recommendationRepository::streamAll);
+    }
+
+    @ApiOperation(value = "List recommendation requests needed from 'from' up to (not including) 'to', soonest first, one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/due")
+    public KeysetPage<Recommendation, DeadlineCursor> dueRecommendations(
+            @ApiParam("start of the range (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @ApiParam("end of the range, not included (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @ApiParam("list requests that are done (true) or not done yet (false)") @RequestParam(defaultValue = "false") boolean done,
+            @ApiParam("only list requests to this professor") @RequestParam(required = false) String professorEmail,
+            @ApiParam("dateNeeded of the next value of the previous page") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterDateNeeded,
+            @ApiParam("id of the next value of the previous page") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of recommendation requests to return") @RequestParam(defaultValue = "100") int limit) {
+        int size = pageSize(limit);
+        PageRequest page = PageRequest.of(0, size + 1);
+        LocalDateTime after = afterDateNeeded == null ? from : afterDateNeeded;
+        long afterIdOrNone = afterDateNeeded == null ? 0 : afterId;
+        List<Recommendation> rows = professorEmail == null
+                ? recommendationRepository.findDue(done, after, afterIdOrNone, to, page)
+                : recommendationRepository.findDueForProfessor(professorEmail, done, after, afterIdOrNone, to, page);
+        return KeysetPage.of(rows, size,
+                recommendation -> new DeadlineCursor(recommendation.getDateNeeded(), recommendation.getId()));
+    }
+
+    @ApiOperation(value = "Count a professor's pending, done and overdue recommendation requests")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/byProfessor")
+    public RecommendationInbox recommendationsByProfessor(
+            @ApiParam("professorEmail (defaults to the current user's email)") @RequestParam(required = false) String professorEmail) {
+        String email = professorEmail == null ? getCurrentUser().getUser().getEmail() : professorEmail;
+        return recommendationCountsService.getInbox(email);
+    }
 
     @ApiOperation(value = "Get a single recommendation")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public Recommendation getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, Recommendation.class)) {
+            return null;
+        }
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
 
@@ -59,6 +143,7 @@ public class RecommendationController extends ApiController {
     @ApiOperation(value = "Create a new recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
+    @Transactional
     public Recommendation postRecommendation(
             @ApiParam("requesterEmail") @RequestParam String requesterEmail,
             @ApiParam("professorEmail") @RequestParam String professorEmail,
@@ -82,33 +167,63 @@ public class RecommendationController extends ApiController {
         recommendation.setDone(done);
 
         Recommendation savedRecommendationn = recommendationRepository.save(recommendation);
+        tableVersionService.bumped(Recommendation.class);
+        recommendationCountsService.recommendationAdded(savedRecommendationn);
 
         return savedRecommendationn;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many recommendations in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<Recommendation> postRecommendations(
+            @ApiParam("JSON array of recommendations; ids are ignored") @RequestBody List<Recommendation> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "requesterEmail", Recommendation::getRequesterEmail,
+                "professorEmail", Recommendation::getProfessorEmail,
+                "explanation", Recommendation::getExplanation,
+                "dateRequested", Recommendation::getDateRequested,
+                "dateNeeded", Recommendation::getDateNeeded));
+        incoming.forEach(recommendation -> recommendation.setId(0));
+        Iterable<Recommendation> saved = recommendationRepository.saveAll(incoming);
+        tableVersionService.bumped(Recommendation.class);
+        recommendationCountsService.recommendationsAdded(saved);
+        return saved;
+    }
+
 
 
     @ApiOperation(value = "Delete a recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteRecommendation(
             @ApiParam("id") @RequestParam Long id) {
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
 
         recommendationRepository.delete(recommendation);
+        tableVersionService.bumped(Recommendation.class);
+        recommendationCountsService.recommendationRemoved(recommendation);
         return genericMessage("Recommendation Request with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
+    @Transactional
     public Recommendation updateRecommendation(
             @ApiParam("id") @RequestParam Long id,
             @RequestBody @Valid Recommendation incoming) {
 
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
+        Recommendation before = Recommendation.builder()
+                .professorEmail(recommendation.getProfessorEmail())
+                .done(recommendation.getDone())
+                .build();
 
         recommendation.setRequesterEmail(incoming.getRequesterEmail());
         recommendation.setProfessorEmail(incoming.getProfessorEmail());
@@ -118,6 +233,8 @@ public class RecommendationController extends ApiController {
         recommendation.setDone(incoming.getDone());
 
         recommendationRepository.save(recommendation);
+        tableVersionService.bumped(Recommendation.class);
+        recommendationCountsService.recommendationChanged(before, recommendation);
 
         return recommendation;
     }
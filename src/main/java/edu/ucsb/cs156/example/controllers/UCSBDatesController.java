@@ -1,18 +1,28 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,10 +31,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Api(description = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -32,22 +46,68 @@ import java.time.LocalDateTime;
 @Slf4j
 public class UCSBDatesController extends ApiController {
 
+    private static final Sort BY_QUARTER_AND_DATE = Sort.by("quarterYYYYQ", "localDateTime");
+
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
     @ApiOperation(value = "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
+    public Iterable<UCSBDate> allUCSBDates(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
         Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
         return dates;
     }
 
+    @ApiOperation(value = "List ucsb dates one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<UCSBDate, Long> pageOfUCSBDates(
+            @ApiParam("only list ucsb dates after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of ucsb dates to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<UCSBDate> rows = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, UCSBDate::getId);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dates as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUCSBDates() {
+        return ndjsonStreamingService.stream(ucsbDateRepository::streamAll);
+    }
+
+    @ApiOperation(value = "List the ucsb dates in a range of quarters, ordered by quarter, then date")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/quarters")
+    public Iterable<UCSBDate> ucsbDatesByQuarterRange(
+            @ApiParam("first quarter of the range, in YYYYQ format, e.g. 20221 for Winter 2022") @RequestParam String startQuarterYYYYQ,
+            @ApiParam("last quarter of the range (inclusive), in YYYYQ format") @RequestParam String endQuarterYYYYQ) {
+        return ucsbDateRepository.findAllByQuarterYYYYQBetween(startQuarterYYYYQ, endQuarterYYYYQ, BY_QUARTER_AND_DATE);
+    }
+
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDate getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDate.class)) {
+            return null;
+        }
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
@@ -74,10 +134,28 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(localDateTime);
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        tableVersionService.bumped(UCSBDate.class);
 
         return savedUcsbDate;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many UCSB dates in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<UCSBDate> postUCSBDates(
+            @ApiParam("JSON array of UCSB dates; ids are ignored") @RequestBody List<UCSBDate> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "quarterYYYYQ", UCSBDate::getQuarterYYYYQ,
+                "name", UCSBDate::getName,
+                "localDateTime", UCSBDate::getLocalDateTime));
+        incoming.forEach(ucsbDate -> ucsbDate.setId(0));
+        Iterable<UCSBDate> saved = ucsbDateRepository.saveAll(incoming);
+        tableVersionService.bumped(UCSBDate.class);
+        return saved;
+    }
+
     @ApiOperation(value = "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
@@ -87,6 +165,7 @@ public class UCSBDatesController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
         ucsbDateRepository.delete(ucsbDate);
+        tableVersionService.bumped(UCSBDate.class);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
@@ -105,6 +184,7 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
         ucsbDateRepository.save(ucsbDate);
+        tableVersionService.bumped(UCSBDate.class);
 
         return ucsbDate;
     }
@@ -1,15 +1,26 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.NearbyCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.DiningCommonsLocator;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,9 +29,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
@@ -31,19 +47,67 @@ public class UCSBDiningCommonsController extends ApiController {
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
+    @Autowired
+    DiningCommonsLocator diningCommonsLocator;
+
     @ApiOperation(value = "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
+    public Iterable<UCSBDiningCommons> allCommonss(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
         Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
         return commons;
     }
 
+    @ApiOperation(value = "List ucsb dining commons one page at a time, in code order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<UCSBDiningCommons, String> pageOfCommonss(
+            @ApiParam("only list ucsb dining commons after this code (the next value of the previous page)") @RequestParam(defaultValue = "") String after,
+            @ApiParam("maximum number of ucsb dining commons to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<UCSBDiningCommons> rows = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, UCSBDiningCommons::getCode);
+    }
+
+    @ApiOperation(value = "Stream all ucsb dining commons as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCommonss() {
+        return ndjsonStreamingService.stream(ucsbDiningCommonsRepository::streamAll);
+    }
+
+    @ApiOperation(value = "List the k ucsb dining commons nearest to a point, nearest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<NearbyCommons> nearestCommonss(
+            @ApiParam("latitude of the point, in degrees") @RequestParam double lat,
+            @ApiParam("longitude of the point, in degrees") @RequestParam double lon,
+            @ApiParam("number of dining commons to return") @RequestParam(defaultValue = "3") int k) {
+        return diningCommonsLocator.nearest(lat, lon, pageSize(k));
+    }
+
     @ApiOperation(value = "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommons getById(
-            @ApiParam("code") @RequestParam String code) {
+            @ApiParam("code") @RequestParam String code,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommons.class)) {
+            return null;
+        }
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
@@ -74,19 +138,41 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        tableVersionService.bumped(UCSBDiningCommons.class);
+        diningCommonsLocator.invalidate();
 
         return savedCommons;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many dining commons in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<UCSBDiningCommons> postCommonsBatch(
+            @ApiParam("JSON array of dining commons; an existing one with the same code is replaced") @RequestBody List<UCSBDiningCommons> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "code", UCSBDiningCommons::getCode,
+                "name", UCSBDiningCommons::getName,
+                "latitude", UCSBDiningCommons::getLatitude,
+                "longitude", UCSBDiningCommons::getLongitude));
+        Iterable<UCSBDiningCommons> saved = ucsbDiningCommonsRepository.saveAll(incoming);
+        tableVersionService.bumped(UCSBDiningCommons.class);
+        diningCommonsLocator.invalidate();
+        return saved;
+    }
+
     @ApiOperation(value = "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
+        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findUncachedByCode(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
         ucsbDiningCommonsRepository.delete(commons);
+        tableVersionService.bumped(UCSBDiningCommons.class);
+        diningCommonsLocator.invalidate();
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
@@ -97,7 +183,7 @@ public class UCSBDiningCommonsController extends ApiController {
             @ApiParam("code") @RequestParam String code,
             @RequestBody @Valid UCSBDiningCommons incoming) {
 
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
+        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findUncachedByCode(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
 
@@ -109,6 +195,8 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(incoming.getLongitude());
 
         ucsbDiningCommonsRepository.save(commons);
+        tableVersionService.bumped(UCSBDiningCommons.class);
+        diningCommonsLocator.invalidate();
 
         return commons;
     }
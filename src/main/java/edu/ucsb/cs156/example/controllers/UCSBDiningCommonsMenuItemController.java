@@ -1,15 +1,25 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.MenuItemCursor;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,9 +28,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+
 
 @Api(description = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/UCSBDiningCommonsMenuItem")
@@ -31,22 +46,76 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
 
     @ApiOperation(value = "List all menu items")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allCommons() {
+    public Iterable<UCSBDiningCommonsMenuItem> allCommons(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+            return null;
+        }
         Iterable<UCSBDiningCommonsMenuItem> commons = ucsbDiningCommonsMenuItemRepository.findAll();
         return commons;
     }
 
+    @ApiOperation(value = "List menu items one page at a time, in id order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<UCSBDiningCommonsMenuItem, Long> pageOfCommons(
+            @ApiParam("only list menu items after this id (the next value of the previous page)") @RequestParam(defaultValue = "0") long after,
+            @ApiParam("maximum number of menu items to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<UCSBDiningCommonsMenuItem> rows = ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    @ApiOperation(value = "Stream all menu items as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCommons() {
+        return ndjsonStreamingService.stream(ucsbDiningCommonsMenuItemRepository::streamAll);
+    }
+
+    @ApiOperation(value = "List the menu items of one dining commons by station and name, one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/byCommons")
+    public KeysetPage<UCSBDiningCommonsMenuItem, MenuItemCursor> menuItemsByCommons(
+            @ApiParam("diningCommonsCode") @RequestParam String code,
+            @ApiParam("only list menu items at this station") @RequestParam(required = false) String station,
+            @ApiParam("station of the next value of the previous page") @RequestParam(defaultValue = "") String afterStation,
+            @ApiParam("name of the next value of the previous page") @RequestParam(defaultValue = "") String afterName,
+            @ApiParam("id of the next value of the previous page") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of menu items to return") @RequestParam(defaultValue = "100") int limit) {
+        int size = pageSize(limit);
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<UCSBDiningCommonsMenuItem> rows = station == null
+                ? ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(code, afterStation, afterName, afterId, page)
+                : ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCodeAndStation(code, station, afterName, afterId, page);
+        return KeysetPage.of(rows, size,
+                menuItem -> new MenuItemCursor(menuItem.getStation(), menuItem.getName(), menuItem.getId()));
+    }
+
 
     
     @ApiOperation(value = "Get a single menu item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommonsMenuItem getById(
-            @ApiParam("id") @RequestParam Long id) {
+            @ApiParam("id") @RequestParam Long id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBDiningCommonsMenuItem.class)) {
+            return null;
+        }
         UCSBDiningCommonsMenuItem commons = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
@@ -71,10 +140,28 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
         commons.setStation(station);
 
         UCSBDiningCommonsMenuItem savedCommons = ucsbDiningCommonsMenuItemRepository.save(commons);
+        tableVersionService.bumped(UCSBDiningCommonsMenuItem.class);
 
         return savedCommons;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many dining commons menu items in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<UCSBDiningCommonsMenuItem> postMenuItems(
+            @ApiParam("JSON array of dining commons menu items; ids are ignored") @RequestBody List<UCSBDiningCommonsMenuItem> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "diningCommonsCode", UCSBDiningCommonsMenuItem::getDiningCommonsCode,
+                "name", UCSBDiningCommonsMenuItem::getName,
+                "station", UCSBDiningCommonsMenuItem::getStation));
+        incoming.forEach(ucsbDiningCommonsMenuItem -> ucsbDiningCommonsMenuItem.setId(0));
+        Iterable<UCSBDiningCommonsMenuItem> saved = ucsbDiningCommonsMenuItemRepository.saveAll(incoming);
+        tableVersionService.bumped(UCSBDiningCommonsMenuItem.class);
+        return saved;
+    }
+
 
     @ApiOperation(value = "Delete a UCSBDiningCommonsMenuItem")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -85,6 +172,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
         ucsbDiningCommonsMenuItemRepository.delete(commons);
+        tableVersionService.bumped(UCSBDiningCommonsMenuItem.class);
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
     }
 
@@ -105,6 +193,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
 
 
         ucsbDiningCommonsMenuItemRepository.save(commons);
+        tableVersionService.bumped(UCSBDiningCommonsMenuItem.class);
 
         return commons;
     }
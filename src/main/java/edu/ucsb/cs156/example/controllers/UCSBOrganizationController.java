@@ -1,17 +1,26 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.BatchValidationException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import springfox.documentation.annotations.ApiIgnore;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,9 +29,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Map;
+
 @Api(description = "UCSBOrganizations")
 @RequestMapping("/api/UCSBOrganization")
 @RestController
@@ -32,19 +46,54 @@ public class UCSBOrganizationController extends ApiController {
     @Autowired
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
     @ApiOperation(value = "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allUCSBOrganizations() {
+    public Iterable<UCSBOrganization> allUCSBOrganizations(@ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
         Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
         return orgs;
     }
 
+    @ApiOperation(value = "List ucsb organizations one page at a time, in orgCode order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", params = "limit")
+    public KeysetPage<UCSBOrganization, String> pageOfUCSBOrganizations(
+            @ApiParam("only list ucsb organizations after this orgCode (the next value of the previous page)") @RequestParam(defaultValue = "") String after,
+            @ApiParam("maximum number of ucsb organizations to return") @RequestParam int limit,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
+        int size = pageSize(limit);
+        List<UCSBOrganization> rows = ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(after, PageRequest.of(0, size + 1));
+        return KeysetPage.of(rows, size, UCSBOrganization::getOrgCode);
+    }
+
+    @ApiOperation(value = "Stream all ucsb organizations as newline delimited JSON (Accept: application/x-ndjson)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUCSBOrganizations() {
+        return ndjsonStreamingService.stream(ucsbOrganizationRepository::streamAll);
+    }
+
     @ApiOperation(value = "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBOrganization getById(
-            @ApiParam("id") @RequestParam String id) {
+            @ApiParam("id") @RequestParam String id,
+            @ApiIgnore ServletWebRequest webRequest) {
+        if (notModified(webRequest, UCSBOrganization.class)) {
+            return null;
+        }
         UCSBOrganization org = ucsbOrganizationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, id));
 
@@ -68,19 +117,37 @@ public class UCSBOrganizationController extends ApiController {
             org.setInactive(inactive);
     
             UCSBOrganization savedOrg = ucsbOrganizationRepository.save(org);
+            tableVersionService.bumped(UCSBOrganization.class);
     
             return savedOrg;
     }
 
+    // POST many
+    @ApiOperation(value = "Create many organizations in one transaction; nothing is saved if any of them is invalid")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/batch")
+    @Transactional
+    public Iterable<UCSBOrganization> postUCSBOrganizations(
+            @ApiParam("JSON array of organizations; an existing one with the same orgCode is replaced") @RequestBody List<UCSBOrganization> incoming) {
+        BatchValidationException.requireFields(incoming, Map.of(
+                "orgCode", UCSBOrganization::getOrgCode,
+                "orgTranslationShort", UCSBOrganization::getOrgTranslationShort,
+                "orgTranslation", UCSBOrganization::getOrgTranslation));
+        Iterable<UCSBOrganization> saved = ucsbOrganizationRepository.saveAll(incoming);
+        tableVersionService.bumped(UCSBOrganization.class);
+        return saved;
+    }
+
     @ApiOperation(value = "Delete an organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteOrganization(
             @ApiParam("id") @RequestParam String id) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(id)
+        UCSBOrganization org = ucsbOrganizationRepository.findUncachedByOrgCode(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, id));
 
         ucsbOrganizationRepository.delete(org);
+        tableVersionService.bumped(UCSBOrganization.class);
         return genericMessage("UCSBOrganization with id %s deleted".formatted(id));
     }
 
@@ -91,7 +158,7 @@ public class UCSBOrganizationController extends ApiController {
             @ApiParam("id") @RequestParam String id,
             @RequestBody @Valid UCSBOrganization incoming) {
 
-            UCSBOrganization org = ucsbOrganizationRepository.findById(id)
+        UCSBOrganization org = ucsbOrganizationRepository.findUncachedByOrgCode(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, id));
 
 
@@ -100,6 +167,7 @@ public class UCSBOrganizationController extends ApiController {
         org.setOrgTranslationShort(incoming.getOrgTranslationShort());
 
         ucsbOrganizationRepository.save(org);
+        tableVersionService.bumped(UCSBOrganization.class);
 
         return org;
     }
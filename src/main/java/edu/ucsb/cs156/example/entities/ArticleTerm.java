@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// One row per distinct word in an article's title and explanation: the
+// full-text index behind GET /api/Article/search (see ArticleSearchService).
+// weight is 3 for each time the word appears in the title plus 1 for each
+// time it appears in the explanation.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "articleterms")
+@Table(indexes = @Index(name = "articleterms_article_id_idx", columnList = "articleId"))
+@IdClass(ArticleTerm.Key.class)
+public class ArticleTerm {
+  @Id
+  private String term;
+
+  @Id
+  private long articleId;
+
+  private int weight;
+
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Key implements Serializable {
+    private String term;
+    private long articleId;
+  }
+}
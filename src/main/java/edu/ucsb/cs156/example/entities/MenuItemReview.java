@@ -5,7 +5,10 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +20,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreviews")
+@Table(indexes = { @Index(name = "menuitemreviews_date_reviewed_idx", columnList = "dateReviewed") })
 public class MenuItemReview {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menuitemreviews_item_id_seq")
+  @SequenceGenerator(name = "menuitemreviews_item_id_seq", sequenceName = "menuitemreviews_item_id_seq", allocationSize = 50)
   private long itemId;
 
   private String reviewerEmail;
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDate;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Number of reviews and sum of their stars for each day of dateReviewed,
+// kept up to date alongside MenuItemReviewStats (see MenuItemReviewStatsService)
+// so that GET /api/MenuItemReview/rollup reads one row per day.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "menuitemreviewdailyrollups")
+public class MenuItemReviewDailyRollup {
+  @Id
+  private LocalDate dayReviewed;
+
+  private long reviewCount;
+  private long starSum;
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Running totals over all menu item reviews, kept in a single row that is
+// updated in the same transaction as every review insert, update and delete
+// (see MenuItemReviewStatsService).  The star histogram counts 1 to 5 stars;
+// reviewCount and starSum include every review.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "menuitemreviewstats")
+public class MenuItemReviewStats {
+  public static final int ALL_REVIEWS = 1;
+
+  @Id
+  private int id;
+
+  private long reviewCount;
+  private long starSum;
+  private long oneStar;
+  private long twoStars;
+  private long threeStars;
+  private long fourStars;
+  private long fiveStars;
+
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) starSum / reviewCount;
+  }
+}
@@ -3,8 +3,11 @@ package edu.ucsb.cs156.example.entities;
 import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,10 +20,14 @@ import lombok.NoArgsConstructor;
 @Builder
 
 @Entity(name = "recommendations")
+@Table(indexes = {
+    @Index(name = "recommendations_done_date_needed_idx", columnList = "done, dateNeeded, id"),
+    @Index(name = "recommendations_professor_done_date_needed_idx", columnList = "professorEmail, done, dateNeeded, id") })
 
 public class Recommendation {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendations_id_seq")
+  @SequenceGenerator(name = "recommendations_id_seq", sequenceName = "recommendations_id_seq", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// How many recommendation requests each professor has pending and done,
+// kept up to date in the same transaction as every recommendation write
+// (see RecommendationCountsService).
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "recommendationcounts")
+public class RecommendationCounts {
+  @Id
+  private String professorEmail;
+
+  private long pending;
+  private long done;
+}
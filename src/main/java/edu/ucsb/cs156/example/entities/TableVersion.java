@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A version number for one table, bumped in the same transaction as every
+// write to that table through the API (see TableVersionService); the ETags
+// of GET responses built from the table are derived from it.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "tableversions")
+public class TableVersion {
+  @Id
+  private String tableName;
+
+  private long version;
+}
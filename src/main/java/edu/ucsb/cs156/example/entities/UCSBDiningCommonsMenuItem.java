@@ -10,15 +10,21 @@ import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommonsmenuitems")
+@Table(indexes = @Index(name = "ucsbdiningcommonsmenuitems_commons_station_name_idx",
+    columnList = "diningCommonsCode, station, name, id"))
 public class UCSBDiningCommonsMenuItem {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdiningcommonsmenuitems_id_seq")
+  @SequenceGenerator(name = "ucsbdiningcommonsmenuitems_id_seq", sequenceName = "ucsbdiningcommonsmenuitems_id_seq", allocationSize = 50)
   private long id;
 
   private String diningCommonsCode;
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.errors;
+
+import edu.ucsb.cs156.example.models.BatchItemError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+public class BatchValidationException extends RuntimeException {
+  private final List<BatchItemError> errors;
+
+  public BatchValidationException(List<BatchItemError> errors, int batchSize) {
+    super("%d of %d items in the batch are invalid"
+      .formatted(errors.stream().map(BatchItemError::getIndex).distinct().count(), batchSize));
+    this.errors = errors;
+  }
+
+  public List<BatchItemError> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Checks every item of a batch and throws, listing every problem found, if
+   * any item is null or has a null or blank value in one of the required
+   * fields.
+   */
+  public static <T> void requireFields(List<T> items, Map<String, Function<T, Object>> requiredFields) {
+    Map<String, Function<T, Object>> fields = new TreeMap<>(requiredFields);
+    List<BatchItemError> errors = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++) {
+      T item = items.get(i);
+      if (item == null) {
+        errors.add(new BatchItemError(i, null, "must not be null"));
+        continue;
+      }
+      for (Map.Entry<String, Function<T, Object>> field : fields.entrySet()) {
+        Object value = field.getValue().apply(item);
+        if (value == null) {
+          errors.add(new BatchItemError(i, field.getKey(), "must not be null"));
+        } else if (value instanceof String s && s.isBlank()) {
+          errors.add(new BatchItemError(i, field.getKey(), "must not be blank"));
+        }
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new BatchValidationException(errors, items.size());
+    }
+  }
+}
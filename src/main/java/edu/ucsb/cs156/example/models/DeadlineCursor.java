@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Keyset position in a listing ordered by (dateNeeded, id); passed back as
+ * the <code>afterDateNeeded</code> and <code>afterId</code> parameters.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DeadlineCursor {
+  private LocalDateTime dateNeeded;
+  private long id;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A help request that was created, updated or deleted.  HelpRequestController
+ * publishes these as application events; HelpRequestEventService pushes them
+ * to the subscribers of GET /api/HelpRequest/stream.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HelpRequestChange {
+  public enum Type { CREATED, UPDATED, DELETED }
+
+  private Type type;
+  private HelpRequest helpRequest;
+}
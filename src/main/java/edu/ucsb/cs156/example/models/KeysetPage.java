@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import java.util.function.Function;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a keyset (seek) paginated listing.
+ *
+ * The client passes <code>next</code> back as the <code>after</code> parameter
+ * to fetch the following page; <code>next</code> is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class KeysetPage<T, K> {
+  private List<T> content;
+  private K next;
+
+  /**
+   * Builds a page from rows fetched with a limit of <code>limit + 1</code>;
+   * the extra row, if present, only signals that another page exists.
+   */
+  public static <T, K> KeysetPage<T, K> of(List<T> rows, int limit, Function<T, K> key) {
+    if (rows.size() <= limit) {
+      return new KeysetPage<>(rows, null);
+    }
+    List<T> content = rows.subList(0, limit);
+    return new KeysetPage<>(content, key.apply(content.get(limit - 1)));
+  }
+}
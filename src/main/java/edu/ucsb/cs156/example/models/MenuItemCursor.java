@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Keyset position in a menu listing ordered by (station, name, id); passed
+ * back as the <code>afterStation</code>, <code>afterName</code> and
+ * <code>afterId</code> parameters.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MenuItemCursor {
+  private String station;
+  private String name;
+  private long id;
+}
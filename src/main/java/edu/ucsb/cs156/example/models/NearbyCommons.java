@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A dining commons returned by GET /api/ucsbdiningcommons/nearest, with its
+ * great-circle distance from the requested point.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NearbyCommons {
+  private UCSBDiningCommons commons;
+  private double distanceMeters;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The counts behind a professor's recommendation inbox badge, as returned by
+ * GET /api/Recommendation/byProfessor; <code>overdue</code> is the number of
+ * pending requests whose dateNeeded has passed.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RecommendationInbox {
+  private String professorEmail;
+  private long pending;
+  private long done;
+  private long overdue;
+}
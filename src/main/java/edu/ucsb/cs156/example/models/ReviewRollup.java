@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of reviews and their stars in one bucket (a day or a week)
+ * of GET /api/MenuItemReview/rollup; <code>start</code> is the bucket's
+ * first day.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReviewRollup {
+  private LocalDate start;
+  private long reviewCount;
+  private long starSum;
+
+  /** Totals not yet assigned to a bucket, as returned by MenuItemReviewRepository.totalsBetween */
+  public ReviewRollup(long reviewCount, long starSum) {
+    this(null, reviewCount, starSum);
+  }
+
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) starSum / reviewCount;
+  }
+}
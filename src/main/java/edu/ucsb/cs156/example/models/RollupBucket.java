@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/** The time buckets GET /api/MenuItemReview/rollup can group reviews into. */
+public enum RollupBucket {
+  DAY {
+    @Override
+    public LocalDate start(LocalDate day) {
+      return day;
+    }
+  },
+  /** Weeks start on Monday, as in ISO 8601 */
+  WEEK {
+    @Override
+    public LocalDate start(LocalDate day) {
+      return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+  };
+
+  /** The first day of the bucket that contains <code>day</code> */
+  public abstract LocalDate start(LocalDate day);
+}
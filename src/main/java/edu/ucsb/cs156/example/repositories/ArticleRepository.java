@@ -1,12 +1,30 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Article;
-import org.springframework.data.repository.CrudRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import java.util.Optional;
 
 @Repository
-public interface ArticleRepository extends CrudRepository<Article, Long> {
-    
+public interface ArticleRepository extends PagingAndSortingRepository<Article, Long> {
+  List<Article> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from articles e order by e.id")
+  Stream<Article> streamAll();
 }
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ArticleTerm;
+
+import java.util.Collection;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArticleTermRepository extends CrudRepository<ArticleTerm, ArticleTerm.Key> {
+
+  /**
+   * Ids of the articles containing any of the terms, best match first:
+   * articles with more of the terms come first, then those where the terms
+   * weigh more, then the newest.  Each term is a primary key range scan.
+   */
+  @Query("select t.articleId from articleterms t where t.term in :terms"
+      + " group by t.articleId"
+      + " order by count(t) desc, sum(t.weight) desc, t.articleId desc")
+  Slice<Long> findArticleIdsByTerms(@Param("terms") Collection<String> terms, Pageable pageable);
+
+  @Modifying
+  @Query("delete from articleterms t where t.articleId = :articleId")
+  int deleteByArticleId(@Param("articleId") long articleId);
+
+  @Modifying
+  @Query("delete from articleterms t")
+  int deleteAllTerms();
+}
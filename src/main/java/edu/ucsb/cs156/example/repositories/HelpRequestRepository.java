@@ -1,12 +1,48 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
-  
-}
\ No newline at end of file
+public interface HelpRequestRepository extends PagingAndSortingRepository<HelpRequest, Long> {
+  List<HelpRequest> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from helprequests e order by e.id")
+  Stream<HelpRequest> streamAll();
+
+  /** The open queue: unsolved help requests, oldest first (see V10 for its partial index) */
+  List<HelpRequest> findBySolvedFalseOrderByRequestTimeAscIdAsc();
+
+  /**
+   * The oldest unsolved help requests nobody has claimed, locked with
+   * SELECT ... FOR UPDATE SKIP LOCKED: rows another transaction is claiming
+   * are skipped rather than waited for, so concurrent callers each get a
+   * different request.  A lock timeout of -2 is Hibernate's
+   * LockOptions.SKIP_LOCKED; on H2, which has no SKIP LOCKED, it is a plain
+   * FOR UPDATE.  V16 adds a partial index with the same predicate.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+  @Query("select e from helprequests e where e.solved = false and e.claimedBy is null order by e.requestTime, e.id")
+  List<HelpRequest> findUnclaimedForUpdate(Pageable pageable);
+}
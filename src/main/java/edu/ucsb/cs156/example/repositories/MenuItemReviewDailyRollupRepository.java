@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewDailyRollup;
+
+import java.time.LocalDate;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MenuItemReviewDailyRollupRepository extends CrudRepository<MenuItemReviewDailyRollup, LocalDate> {
+  Iterable<MenuItemReviewDailyRollup> findAllByDayReviewedBetween(LocalDate firstDay, LocalDate lastDay);
+
+  /**
+   * Adds the deltas to one day's totals in the database; returns the number
+   * of rows updated, which is 0 if there is no row for that day yet.
+   */
+  @Modifying
+  @Query("update menuitemreviewdailyrollups d set"
+      + " d.reviewCount = d.reviewCount + :reviews,"
+      + " d.starSum = d.starSum + :stars"
+      + " where d.dayReviewed = :day")
+  int addToDay(@Param("day") LocalDate day, @Param("reviews") long reviews, @Param("stars") long stars);
+
+  @Modifying
+  @Query("delete from menuitemreviewdailyrollups")
+  int deleteAllDays();
+
+  /** Recomputes every day from menuitemreviews; run after deleteAllDays. */
+  @Modifying
+  @Query(value = "insert into menuitemreviewdailyrollups (day_reviewed, review_count, star_sum)"
+      + " select cast(date_reviewed as date), count(*), coalesce(sum(stars), 0)"
+      + " from menuitemreviews where date_reviewed is not null"
+      + " group by cast(date_reviewed as date)", nativeQuery = true)
+  int insertAllDays();
+}
@@ -1,12 +1,38 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewRollup;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 
 @Repository
-public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
+public interface MenuItemReviewRepository extends PagingAndSortingRepository<MenuItemReview, Long> {
+  List<MenuItemReview> findByItemIdGreaterThanOrderByItemIdAsc(long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from menuitemreviews e order by e.itemId")
+  Stream<MenuItemReview> streamAll();
 
+  /** Count and star sum of the reviews with start &lt;= dateReviewed &lt; end */
+  @Query("select new edu.ucsb.cs156.example.models.ReviewRollup(count(r), coalesce(sum(r.stars), 0L))"
+      + " from menuitemreviews r where r.dateReviewed >= :start and r.dateReviewed < :end")
+  ReviewRollup totalsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MenuItemReviewStatsRepository extends CrudRepository<MenuItemReviewStats, Integer> {
+
+  /**
+   * Adds the deltas to the totals in the database, so concurrent writers
+   * never overwrite each other's changes; returns the number of rows updated.
+   */
+  @Modifying
+  @Query("update menuitemreviewstats s set"
+      + " s.reviewCount = s.reviewCount + :reviews,"
+      + " s.starSum = s.starSum + :stars,"
+      + " s.oneStar = s.oneStar + :oneStar,"
+      + " s.twoStars = s.twoStars + :twoStars,"
+      + " s.threeStars = s.threeStars + :threeStars,"
+      + " s.fourStars = s.fourStars + :fourStars,"
+      + " s.fiveStars = s.fiveStars + :fiveStars"
+      + " where s.id = :id")
+  int addToTotals(@Param("id") int id,
+      @Param("reviews") long reviews,
+      @Param("stars") long stars,
+      @Param("oneStar") long oneStar,
+      @Param("twoStars") long twoStars,
+      @Param("threeStars") long threeStars,
+      @Param("fourStars") long fourStars,
+      @Param("fiveStars") long fiveStars);
+
+  /**
+   * Computes the totals from scratch, with a full scan of menuitemreviews;
+   * the result has id MenuItemReviewStats.ALL_REVIEWS.
+   */
+  @Query("select new edu.ucsb.cs156.example.entities.MenuItemReviewStats(1, count(r),"
+      + " coalesce(sum(r.stars), 0L),"
+      + " coalesce(sum(case when r.stars = 1 then 1L else 0L end), 0L),"
+      + " coalesce(sum(case when r.stars = 2 then 1L else 0L end), 0L),"
+      + " coalesce(sum(case when r.stars = 3 then 1L else 0L end), 0L),"
+      + " coalesce(sum(case when r.stars = 4 then 1L else 0L end), 0L),"
+      + " coalesce(sum(case when r.stars = 5 then 1L else 0L end), 0L))"
+      + " from menuitemreviews r")
+  MenuItemReviewStats computeTotals();
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.RecommendationCounts;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RecommendationCountsRepository extends CrudRepository<RecommendationCounts, String> {
+
+  /**
+   * Adds the deltas to one professor's counts in the database; returns the
+   * number of rows updated, which is 0 if the professor has no row yet.
+   */
+  @Modifying
+  @Query("update recommendationcounts c set"
+      + " c.pending = c.pending + :pending,"
+      + " c.done = c.done + :done"
+      + " where c.professorEmail = :professorEmail")
+  int addToCounts(@Param("professorEmail") String professorEmail,
+      @Param("pending") long pending,
+      @Param("done") long done);
+
+  /**
+   * Creates a professor's row from the requests already committed; fails
+   * with a DataIntegrityViolationException if another transaction created
+   * it first.
+   */
+  @Modifying
+  @Query(value = "insert into recommendationcounts (professor_email, pending, done)"
+      + " select :professorEmail,"
+      + " coalesce(sum(case when done then 0 else 1 end), 0),"
+      + " coalesce(sum(case when done then 1 else 0 end), 0)"
+      + " from recommendations where professor_email = :professorEmail", nativeQuery = true)
+  int insertCounts(@Param("professorEmail") String professorEmail);
+}
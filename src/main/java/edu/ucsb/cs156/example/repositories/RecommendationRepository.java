@@ -1,11 +1,64 @@
 package edu.ucsb.cs156.example.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
 
 @Repository
-public interface RecommendationRepository extends CrudRepository<Recommendation, Long> {
+public interface RecommendationRepository extends PagingAndSortingRepository<Recommendation, Long> {
+  List<Recommendation> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from recommendations e order by e.id")
+  Stream<Recommendation> streamAll();
+
+  /**
+   * Recommendations with the given done flag needed before <code>to</code>,
+   * in (dateNeeded, id) order, starting after the keyset position
+   * (afterDateNeeded, afterId).  The redundant
+   * <code>dateNeeded &gt;= afterDateNeeded</code> gives the database the lower
+   * bound of its scan of recommendations_done_date_needed_idx.
+   */
+  @Query("select r from recommendations r where r.done = :done"
+      + " and r.dateNeeded >= :afterDateNeeded and r.dateNeeded < :to"
+      + " and (r.dateNeeded > :afterDateNeeded or r.id > :afterId)"
+      + " order by r.dateNeeded, r.id")
+  List<Recommendation> findDue(@Param("done") boolean done,
+      @Param("afterDateNeeded") LocalDateTime afterDateNeeded,
+      @Param("afterId") long afterId,
+      @Param("to") LocalDateTime to,
+      Pageable pageable);
+
+  /** Pending requests past their dateNeeded, counted from recommendations_professor_done_date_needed_idx */
+  long countByProfessorEmailAndDoneFalseAndDateNeededLessThan(String professorEmail, LocalDateTime now);
+
+  /** findDue for one professor, served by recommendations_professor_done_date_needed_idx */
+  @Query("select r from recommendations r where r.professorEmail = :professorEmail and r.done = :done"
+      + " and r.dateNeeded >= :afterDateNeeded and r.dateNeeded < :to"
+      + " and (r.dateNeeded > :afterDateNeeded or r.id > :afterId)"
+      + " order by r.dateNeeded, r.id")
+  List<Recommendation> findDueForProfessor(@Param("professorEmail") String professorEmail,
+      @Param("done") boolean done,
+      @Param("afterDateNeeded") LocalDateTime afterDateNeeded,
+      @Param("afterId") long afterId,
+      @Param("to") LocalDateTime to,
+      Pageable pageable);
 }
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TableVersionRepository extends CrudRepository<TableVersion, String> {
+
+  /**
+   * Adds one to a table's version in the database; returns the number of
+   * rows updated, which is 0 if the table has no row yet.
+   */
+  @Modifying
+  @Query("update tableversions v set v.version = v.version + 1 where v.tableName = :tableName")
+  int bump(@Param("tableName") String tableName);
+
+  /**
+   * Creates a table's row; fails with a DataIntegrityViolationException if
+   * another transaction created it first.
+   */
+  @Modifying
+  @Query(value = "insert into tableversions (table_name, version) values (:tableName, :version)", nativeQuery = true)
+  int insertVersion(@Param("tableName") String tableName, @Param("version") long version);
+}
@@ -1,14 +1,60 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 
 
 @Repository
-public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
-  
-}
\ No newline at end of file
+public interface UCSBDiningCommonsMenuItemRepository extends PagingAndSortingRepository<UCSBDiningCommonsMenuItem, Long> {
+  List<UCSBDiningCommonsMenuItem> findByIdGreaterThanOrderByIdAsc(long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from ucsbdiningcommonsmenuitems e order by e.id")
+  Stream<UCSBDiningCommonsMenuItem> streamAll();
+
+  /**
+   * One commons' menu items after (afterStation, afterName, afterId) in
+   * (station, name, id) order; pass empty strings and 0 for the first page.
+   * Every column of the entity is in ucsbdiningcommonsmenuitems_commons_station_name_idx,
+   * so this is a range scan of the index alone.
+   */
+  @Query("select e from ucsbdiningcommonsmenuitems e where e.diningCommonsCode = :diningCommonsCode"
+      + " and e.station >= :afterStation"
+      + " and (e.station > :afterStation or e.name > :afterName or (e.name = :afterName and e.id > :afterId))"
+      + " order by e.station, e.name, e.id")
+  List<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCode(@Param("diningCommonsCode") String diningCommonsCode,
+      @Param("afterStation") String afterStation,
+      @Param("afterName") String afterName,
+      @Param("afterId") long afterId,
+      Pageable pageable);
+
+  /** findAllByDiningCommonsCode for a single station, in (name, id) order */
+  @Query("select e from ucsbdiningcommonsmenuitems e where e.diningCommonsCode = :diningCommonsCode"
+      + " and e.station = :station and e.name >= :afterName"
+      + " and (e.name > :afterName or e.id > :afterId)"
+      + " order by e.name, e.id")
+  List<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCodeAndStation(@Param("diningCommonsCode") String diningCommonsCode,
+      @Param("station") String station,
+      @Param("afterName") String afterName,
+      @Param("afterId") long afterId,
+      Pageable pageable);
+}
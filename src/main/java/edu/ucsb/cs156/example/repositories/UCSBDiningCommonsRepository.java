@@ -1,13 +1,79 @@
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CachingConfig;
+import edu.ucsb.cs156.example.config.EvictAllEntries;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+
+// findById and findAll are read through the ucsbDiningCommons cache, keyed by
+// the table's version, and any write clears it (see CachingConfig).  The
+// cached entities are shared by every caller, so code that changes an
+// entity loads it with findUncachedByCode instead.
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+@CacheConfig(cacheNames = CachingConfig.UCSB_DINING_COMMONS, keyGenerator = CachingConfig.TABLE_VERSION_KEYS)
+public interface UCSBDiningCommonsRepository extends PagingAndSortingRepository<UCSBDiningCommons, String> {
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from ucsbdiningcommons e order by e.code")
+  Stream<UCSBDiningCommons> streamAll();
+
+  Optional<UCSBDiningCommons> findUncachedByCode(String code);
+
+  @Override
+  @Cacheable
+  Optional<UCSBDiningCommons> findById(String id);
+
+  @Override
+  @Cacheable
+  Iterable<UCSBDiningCommons> findAll();
+
+  @Override
+  @EvictAllEntries
+  <S extends UCSBDiningCommons> S save(S entity);
+
+  @Override
+  @EvictAllEntries
+  <S extends UCSBDiningCommons> Iterable<S> saveAll(Iterable<S> entities);
+
+  @Override
+  @EvictAllEntries
+  void delete(UCSBDiningCommons entity);
+
+  @Override
+  @EvictAllEntries
+  void deleteById(String id);
+
+  @Override
+  @EvictAllEntries
+  void deleteAllById(Iterable<? extends String> ids);
+
+  @Override
+  @EvictAllEntries
+  void deleteAll(Iterable<? extends UCSBDiningCommons> entities);
+
+  @Override
+  @EvictAllEntries
+  void deleteAll();
+}
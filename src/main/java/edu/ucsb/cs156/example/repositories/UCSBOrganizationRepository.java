@@ -1,13 +1,79 @@
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CachingConfig;
+import edu.ucsb.cs156.example.config.EvictAllEntries;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+
+// findById and findAll are read through the ucsbOrganizations cache, keyed by
+// the table's version, and any write clears it (see CachingConfig).  The
+// cached entities are shared by every caller, so code that changes an
+// entity loads it with findUncachedByOrgCode instead.
 @Repository
-public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
- 
-}
\ No newline at end of file
+@CacheConfig(cacheNames = CachingConfig.UCSB_ORGANIZATIONS, keyGenerator = CachingConfig.TABLE_VERSION_KEYS)
+public interface UCSBOrganizationRepository extends PagingAndSortingRepository<UCSBOrganization, String> {
+  List<UCSBOrganization> findByOrgCodeGreaterThanOrderByOrgCodeAsc(String after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamingService.FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true") })
+  @Query("select e from ucsborganizations e order by e.orgCode")
+  Stream<UCSBOrganization> streamAll();
+
+  Optional<UCSBOrganization> findUncachedByOrgCode(String orgCode);
+
+  @Override
+  @Cacheable
+  Optional<UCSBOrganization> findById(String id);
+
+  @Override
+  @Cacheable
+  Iterable<UCSBOrganization> findAll();
+
+  @Override
+  @EvictAllEntries
+  <S extends UCSBOrganization> S save(S entity);
+
+  @Override
+  @EvictAllEntries
+  <S extends UCSBOrganization> Iterable<S> saveAll(Iterable<S> entities);
+
+  @Override
+  @EvictAllEntries
+  void delete(UCSBOrganization entity);
+
+  @Override
+  @EvictAllEntries
+  void deleteById(String id);
+
+  @Override
+  @EvictAllEntries
+  void deleteAllById(Iterable<? extends String> ids);
+
+  @Override
+  @EvictAllEntries
+  void deleteAll(Iterable<? extends UCSBOrganization> entities);
+
+  @Override
+  @EvictAllEntries
+  void deleteAll();
+}
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Answers "is this user an admin?" for SecurityConfig (on every OAuth2 login)
+// and CurrentUserServiceImpl.
+//
+// Emails listed in app.admin.emails are held in a HashSet and never need the
+// database.  For everyone else the admin column of the users table is looked
+// up once and cached in a bounded Caffeine cache whose entries expire after
+// app.admin.cache.ttl-seconds.  Hit and miss counts are published as the
+// Micrometer metric cache.gets{cache="adminStatus"} (see /actuator/metrics).
+
+@Slf4j
+@Service("adminStatusCache")
+public class AdminStatusCache implements MeterBinder {
+  public static final String CACHE_NAME = "adminStatus";
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Value("${app.admin.emails}")
+  final private List<String> adminEmails = new ArrayList<String>();
+
+  @Value("${app.admin.cache.maximum-size:10000}")
+  private long maximumSize;
+
+  @Value("${app.admin.cache.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  private Set<String> adminEmailIndex;
+
+  private Cache<String, Boolean> adminStatus;
+
+  @PostConstruct
+  void init() {
+    adminEmailIndex = new HashSet<>(adminEmails);
+    adminStatus = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+  }
+
+  public boolean isAdminEmail(String email) {
+    return adminEmailIndex.contains(email);
+  }
+
+  public boolean isAdmin(String email) {
+    if (isAdminEmail(email)) {
+      return true;
+    }
+    return adminStatus.get(email, this::lookupAdmin);
+  }
+
+  public void evict(String email) {
+    adminStatus.invalidate(email);
+  }
+
+  private boolean lookupAdmin(String email) {
+    log.info("admin status cache miss for {}", email);
+    return userRepository.findByEmail(email).map(User::getAdmin).orElse(false);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, adminStatus, CACHE_NAME);
+  }
+}
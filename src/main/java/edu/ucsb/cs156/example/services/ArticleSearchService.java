@@ -0,0 +1,134 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.ArticleTerm;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.repositories.ArticleTermRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Full-text search over article titles and explanations, using the
+// articleterms table as an inverted index.
+//
+// ArticleController calls the article* methods inside the transaction that
+// writes the articles, so an article is searchable exactly when it is
+// committed, on every instance of the app.  A word is a run of letters and
+// digits, lowercased; there is no stemming, so "test" does not find
+// "testing".
+
+@Slf4j
+@Service("articleSearch")
+public class ArticleSearchService {
+
+  static final int TITLE_WEIGHT = 3;
+  static final int EXPLANATION_WEIGHT = 1;
+  static final int MAX_TERM_LENGTH = 64;
+  static final int MAX_QUERY_TERMS = 16;
+
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+  @Autowired
+  ArticleTermRepository articleTermRepository;
+
+  @Autowired
+  ArticleRepository articleRepository;
+
+  @Autowired
+  EntityManager entityManager;
+
+  /**
+   * Articles containing any word of <code>q</code>, best match first (see
+   * ArticleTermRepository.findArticleIdsByTerms).
+   */
+  public Slice<Article> search(String q, Pageable pageable) {
+    Set<String> terms = new LinkedHashSet<>(terms(q));
+    if (terms.isEmpty()) {
+      return new SliceImpl<>(new ArrayList<>(), pageable, false);
+    }
+    Slice<Long> ids = articleTermRepository.findArticleIdsByTerms(
+        terms.stream().limit(MAX_QUERY_TERMS).collect(Collectors.toList()), pageable);
+    Map<Long, Article> byId = new TreeMap<>();
+    articleRepository.findAllById(ids.getContent()).forEach(article -> byId.put(article.getId(), article));
+    List<Article> ranked = ids.getContent().stream()
+        .map(byId::get)
+        .filter(article -> article != null)
+        .collect(Collectors.toList());
+    return new SliceImpl<>(ranked, ids.getPageable(), ids.hasNext());
+  }
+
+  @Transactional
+  public void articleAdded(Article article) {
+    index(article);
+  }
+
+  @Transactional
+  public void articlesAdded(Iterable<Article> articles) {
+    articles.forEach(this::index);
+  }
+
+  @Transactional
+  public void articleChanged(Article article) {
+    articleTermRepository.deleteByArticleId(article.getId());
+    index(article);
+  }
+
+  @Transactional
+  public void articleRemoved(Article article) {
+    articleTermRepository.deleteByArticleId(article.getId());
+  }
+
+  /** Reindexes every article, e.g. after a bulk import in SQL. */
+  @Transactional
+  public long rebuild() {
+    articleTermRepository.deleteAllTerms();
+    long articles = 0;
+    for (Article article : articleRepository.findAll()) {
+      index(article);
+      articles++;
+    }
+    log.info("rebuilt article search index: {} articles", articles);
+    return articles;
+  }
+
+  private void index(Article article) {
+    Map<String, Integer> weights = new TreeMap<>();
+    terms(article.getTitle()).forEach(term -> weights.merge(term, TITLE_WEIGHT, Integer::sum));
+    terms(article.getExplanation()).forEach(term -> weights.merge(term, EXPLANATION_WEIGHT, Integer::sum));
+    // persist rather than save: the rows are always new, and save would
+    // first select each one to decide whether to insert or update it
+    weights.forEach((term, weight) -> entityManager.persist(new ArticleTerm(term, article.getId(), weight)));
+  }
+
+  /** The words of <code>text</code>, in order and with repeats; empty for null. */
+  static List<String> terms(String text) {
+    List<String> terms = new ArrayList<>();
+    if (text == null) {
+      return terms;
+    }
+    Matcher matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      String term = matcher.group().toLowerCase(Locale.ROOT);
+      terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+    }
+    return terms;
+  }
+}
@@ -5,13 +5,11 @@ import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -19,19 +17,30 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 
+// The resolved User is cached in the HTTP session, so that /api/currentUser
+// (requested on every page load) does not query the users table each time.
+// The cached copy is dropped when the email no longer matches the login, or
+// when its admin flag differs from AdminStatusCache, which sees promotions
+// through app.admin.emails at once and other changes to the admin column
+// once its entry expires.
+
 @Slf4j
 @Service("currentUser")
 public class CurrentUserServiceImpl extends CurrentUserService {
+  static final String CACHED_USER_ATTRIBUTE = CurrentUserServiceImpl.class.getName() + ".user";
+
   @Autowired
   private UserRepository userRepository;
 
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  final private List<String> adminEmails = new ArrayList<String>();
+  @Autowired
+  AdminStatusCache adminStatusCache;
 
   public CurrentUser getCurrentUser() {
     CurrentUser cu = CurrentUser.builder()
@@ -55,16 +64,23 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String locale = oAuthUser.getAttribute("locale");
     String hostedDomain = oAuthUser.getAttribute("hd");
 
+    User cached = getCachedUser(email);
+    if (cached != null) {
+      return cached;
+    }
+
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
     log.info("attrs={}",attrs);
 
     Optional<User> ou = userRepository.findByEmail(email);
     if (ou.isPresent()) {
       User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
+      if (adminStatusCache.isAdminEmail(email) && !u.getAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
+        adminStatusCache.evict(email);
       }
+      cacheUser(u);
       return u;
     }
 
@@ -78,12 +94,48 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .emailVerified(emailVerified)
         .locale(locale)
         .hostedDomain(hostedDomain)
-        .admin(adminEmails.contains(email))
+        .admin(adminStatusCache.isAdminEmail(email))
         .build();
-    userRepository.save(u);
+    u = insertOrFindUser(u);
+    cacheUser(u);
     return u;
   }
 
+  // Two requests from a brand new user (e.g. the parallel API calls made by
+  // the first page load) can both miss in findByEmail.  The unique index on
+  // users.email lets only one insert succeed; the other request uses that row.
+  private User insertOrFindUser(User u) {
+    try {
+      return userRepository.save(u);
+    } catch (DataIntegrityViolationException e) {
+      log.info("user {} was created by a concurrent request", u.getEmail());
+      return userRepository.findByEmail(u.getEmail()).orElseThrow(() -> e);
+    }
+  }
+
+  private User getCachedUser(String email) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return null;
+    }
+    User cached = (User) attributes.getAttribute(CACHED_USER_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+    if (cached == null || !cached.getEmail().equals(email)) {
+      return null;
+    }
+    if (cached.getAdmin() != adminStatusCache.isAdmin(email)) {
+      attributes.removeAttribute(CACHED_USER_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+      return null;
+    }
+    return cached;
+  }
+
+  private void cacheUser(User u) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes != null) {
+      attributes.setAttribute(CACHED_USER_ATTRIBUTE, u, RequestAttributes.SCOPE_SESSION);
+    }
+  }
+
   public User getUser() {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
@@ -0,0 +1,215 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.NearbyCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Answers "which dining commons are closest to here?" from an in-memory
+// k-d tree, for GET /api/ucsbdiningcommons/nearest.
+//
+// Each commons with a latitude and longitude is placed on the unit sphere as
+// an (x, y, z) point.  The straight-line distance between two such points
+// grows with the great-circle distance between them, so the k nearest points
+// in the tree are exactly the k nearest commons on the globe, with no
+// special cases at the poles or the date line.
+//
+// The tree is built from the database on first use.  UCSBDiningCommonsController
+// calls invalidate() after every write, and the next query rebuilds it.  A
+// write made in a transaction invalidates the tree again once it commits, as
+// a query in the meantime would rebuild it without the write.
+// Writes made through another instance of the app are picked up once the
+// tree is older than app.diningcommons.nearest.max-age-seconds.
+
+@Slf4j
+@Service("diningCommonsLocator")
+public class DiningCommonsLocator {
+  static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Value("${app.diningcommons.nearest.max-age-seconds:60}")
+  long maxAgeSeconds;
+
+  // bumped by every invalidate(), so that a rebuild which read the table
+  // before a write does not replace the tree after it
+  private final AtomicLong generation = new AtomicLong();
+
+  private volatile KdTree tree;
+
+  /** The <code>k</code> commons nearest to (lat, lon), nearest first. */
+  public List<NearbyCommons> nearest(double lat, double lon, int k) {
+    return currentTree().nearest(toPoint(lat, lon), k);
+  }
+
+  public void invalidate() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          invalidateNow();
+        }
+      });
+    }
+    invalidateNow();
+  }
+
+  private void invalidateNow() {
+    generation.incrementAndGet();
+    tree = null;
+  }
+
+  private KdTree currentTree() {
+    KdTree current = tree;
+    if (current != null && System.nanoTime() - current.builtAt < TimeUnit.SECONDS.toNanos(maxAgeSeconds)) {
+      return current;
+    }
+    return rebuild();
+  }
+
+  private synchronized KdTree rebuild() {
+    long before = generation.get();
+    List<UCSBDiningCommons> located = new ArrayList<>();
+    for (UCSBDiningCommons commons : ucsbDiningCommonsRepository.findAll()) {
+      if (commons.getLatitude() != null && commons.getLongitude() != null) {
+        located.add(commons);
+      }
+    }
+    KdTree built = new KdTree(located);
+    if (generation.get() == before) {
+      tree = built;
+    }
+    log.info("built dining commons k-d tree: {} commons", located.size());
+    return built;
+  }
+
+  static double[] toPoint(double lat, double lon) {
+    double phi = Math.toRadians(lat);
+    double lambda = Math.toRadians(lon);
+    return new double[] {
+        Math.cos(phi) * Math.cos(lambda),
+        Math.cos(phi) * Math.sin(lambda),
+        Math.sin(phi) };
+  }
+
+  /** Great-circle distance for a straight-line distance between points on the unit sphere */
+  static double chordToMeters(double chord) {
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, chord / 2));
+  }
+
+  // A balanced k-d tree over 3-d points, stored implicitly: the node for
+  // nodes[from, to) is nodes[(from + to) / 2], split on axis depth % 3,
+  // with its left subtree before it and its right subtree after it.
+  // Never modified once built.
+  static final class KdTree {
+    private final UCSBDiningCommons[] commons;
+    private final double[][] points;
+    private final long builtAt = System.nanoTime();
+
+    KdTree(List<UCSBDiningCommons> located) {
+      int n = located.size();
+      Integer[] order = new Integer[n];
+      double[][] unsorted = new double[n][];
+      for (int i = 0; i < n; i++) {
+        order[i] = i;
+        unsorted[i] = toPoint(located.get(i).getLatitude(), located.get(i).getLongitude());
+      }
+      build(order, unsorted, 0, n, 0);
+      commons = new UCSBDiningCommons[n];
+      points = new double[n][];
+      for (int i = 0; i < n; i++) {
+        commons[i] = located.get(order[i]);
+        points[i] = unsorted[order[i]];
+      }
+    }
+
+    private static void build(Integer[] order, double[][] unsorted, int from, int to, int depth) {
+      if (to - from <= 1) {
+        return;
+      }
+      int axis = depth % 3;
+      Arrays.sort(order, from, to, Comparator.comparingDouble(i -> unsorted[i][axis]));
+      int mid = (from + to) >>> 1;
+      build(order, unsorted, from, mid, depth + 1);
+      build(order, unsorted, mid + 1, to, depth + 1);
+    }
+
+    List<NearbyCommons> nearest(double[] target, int k) {
+      if (k <= 0) {
+        return new ArrayList<>();
+      }
+      // the farthest of the best k so far is at the head
+      PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.reverseOrder());
+      search(target, k, best, 0, commons.length, 0);
+      List<Candidate> sorted = new ArrayList<>(best);
+      sorted.sort(null);
+      List<NearbyCommons> result = new ArrayList<>(sorted.size());
+      for (Candidate candidate : sorted) {
+        result.add(new NearbyCommons(commons[candidate.index], chordToMeters(Math.sqrt(candidate.squaredDistance))));
+      }
+      return result;
+    }
+
+    private void search(double[] target, int k, PriorityQueue<Candidate> best, int from, int to, int depth) {
+      if (from >= to) {
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      double[] point = points[mid];
+      double dx = point[0] - target[0];
+      double dy = point[1] - target[1];
+      double dz = point[2] - target[2];
+      Candidate candidate = new Candidate(mid, dx * dx + dy * dy + dz * dz, commons[mid].getCode());
+      if (best.size() < k) {
+        best.add(candidate);
+      } else if (candidate.compareTo(best.peek()) < 0) {
+        best.poll();
+        best.add(candidate);
+      }
+
+      int axis = depth % 3;
+      double offset = target[axis] - point[axis];
+      boolean leftFirst = offset < 0;
+      search(target, k, best, leftFirst ? from : mid + 1, leftFirst ? mid : to, depth + 1);
+      // the other side can only hold a closer commons if the splitting
+      // plane is closer than the farthest of the best k
+      if (best.size() < k || offset * offset <= best.peek().squaredDistance) {
+        search(target, k, best, leftFirst ? mid + 1 : from, leftFirst ? to : mid, depth + 1);
+      }
+    }
+  }
+
+  // ties are broken by code so that results do not depend on tree layout
+  private static final class Candidate implements Comparable<Candidate> {
+    final int index;
+    final double squaredDistance;
+    final String code;
+
+    Candidate(int index, double squaredDistance, String code) {
+      this.index = index;
+      this.squaredDistance = squaredDistance;
+      this.code = code;
+    }
+
+    @Override
+    public int compareTo(Candidate other) {
+      int byDistance = Double.compare(squaredDistance, other.squaredDistance);
+      return byDistance != 0 ? byDistance : code.compareTo(other.code);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.models.HelpRequestChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Pushes help request changes to browsers as Server-Sent Events, so that
+// office hours dashboards can follow the queue without polling
+// /api/HelpRequest/all.  See:
+// https://developer.mozilla.org/en-US/docs/Web/API/Server-sent_events
+//
+// HelpRequestController publishes a HelpRequestChange on the application
+// event bus after each write (after commit, when there is a transaction).
+// The change is serialized to JSON once and handed to a single fan-out
+// thread that writes it to every subscriber, so the request that made the
+// change never waits on the subscribers.  Subscribers that have gone away
+// are dropped when a send to them fails; a comment every
+// HEARTBEAT_SECONDS finds those even when nothing changes, and keeps
+// proxies from closing idle connections.
+
+@Slf4j
+@Service("helpRequestEvents")
+public class HelpRequestEventService implements MeterBinder {
+
+  /** Subscriptions end after this long; EventSource reconnects on its own */
+  public static final long STREAM_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+  private static final long HEARTBEAT_SECONDS = 25;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+  final ScheduledExecutorService fanOut = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "helprequest-events");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public HelpRequestEventService() {
+    fanOut.scheduleWithFixedDelay(() -> sendToAll(() -> SseEmitter.event().comment("heartbeat")),
+        HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  public SseEmitter subscribe() {
+    SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+    add(emitter);
+    return emitter;
+  }
+
+  void add(SseEmitter emitter) {
+    emitter.onCompletion(() -> remove(emitter));
+    emitter.onTimeout(() -> remove(emitter));
+    emitter.onError(e -> remove(emitter));
+    subscribers.add(emitter);
+  }
+
+  void remove(SseEmitter emitter) {
+    subscribers.remove(emitter);
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onChange(HelpRequestChange change) {
+    if (subscribers.isEmpty()) {
+      return;
+    }
+    String json;
+    try {
+      json = mapper.writeValueAsString(change);
+    } catch (JsonProcessingException e) {
+      log.error("could not serialize {}", change, e);
+      return;
+    }
+    fanOut.execute(() -> sendToAll(() -> SseEmitter.event().data(json)));
+  }
+
+  // An SseEventBuilder can only be built once, so each subscriber gets its
+  // own; they all share the same JSON string.
+  private void sendToAll(Supplier<SseEmitter.SseEventBuilder> event) {
+    for (SseEmitter emitter : subscribers) {
+      try {
+        emitter.send(event.get());
+      } catch (IOException | IllegalStateException e) {
+        log.debug("dropping help request event subscriber: {}", e.toString());
+        remove(emitter);
+        emitter.completeWithError(e);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    fanOut.shutdownNow();
+    subscribers.forEach(SseEmitter::complete);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("helprequest.stream.subscribers", subscribers, List::size)
+        .description("Open GET /api/HelpRequest/stream connections")
+        .register(registry);
+  }
+}
@@ -0,0 +1,197 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewDailyRollup;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.ReviewRollup;
+import edu.ucsb.cs156.example.models.RollupBucket;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewDailyRollupRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Keeps the menuitemreviewstats row and the menuitemreviewdailyrollups rows
+// in step with the menuitemreviews table.
+//
+// MenuItemReviewController calls the review* methods inside the transaction
+// that writes the reviews, so the totals change exactly when the reviews do.
+// Each call is one atomic UPDATE that adds deltas to the totals, then one per
+// day touched; if a row is missing (a new database, or the first review of a
+// day), it is created from a count of the reviews instead.  The totals UPDATE
+// comes first and locks the totals row until commit, so two writers never
+// race to create the same day.
+
+@Slf4j
+@Service("menuItemReviewStats")
+public class MenuItemReviewStatsService {
+
+  @Autowired
+  MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @Autowired
+  MenuItemReviewDailyRollupRepository menuItemReviewDailyRollupRepository;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  public MenuItemReviewStats getStats() {
+    return menuItemReviewStatsRepository.findById(MenuItemReviewStats.ALL_REVIEWS)
+        .orElseGet(menuItemReviewStatsRepository::computeTotals);
+  }
+
+  /**
+   * Reviews with <code>from &lt;= dateReviewed &lt; to</code>, grouped into
+   * buckets; buckets with no reviews are left out.
+   *
+   * Whole days come from the daily rollups; the partial days at either end
+   * of the range are counted from the reviews themselves.
+   */
+  public List<ReviewRollup> getRollup(LocalDateTime from, LocalDateTime to, RollupBucket bucket) {
+    if (!from.isBefore(to)) {
+      return new ArrayList<>();
+    }
+    Map<LocalDate, ReviewRollup> buckets = new TreeMap<>();
+
+    LocalDate firstWholeDay = from.toLocalDate();
+    if (from.isAfter(firstWholeDay.atStartOfDay())) {
+      firstWholeDay = firstWholeDay.plusDays(1);
+    }
+    LocalDate endOfWholeDays = to.toLocalDate();
+
+    LocalDateTime headEnd = min(firstWholeDay.atStartOfDay(), to);
+    addRange(buckets, bucket, from, headEnd);
+    if (firstWholeDay.isBefore(endOfWholeDays)) {
+      for (MenuItemReviewDailyRollup day : menuItemReviewDailyRollupRepository
+          .findAllByDayReviewedBetween(firstWholeDay, endOfWholeDays.minusDays(1))) {
+        add(buckets, bucket, day.getDayReviewed(), day.getReviewCount(), day.getStarSum());
+      }
+    }
+    addRange(buckets, bucket, max(endOfWholeDays.atStartOfDay(), headEnd), to);
+
+    return new ArrayList<>(buckets.values());
+  }
+
+  @Transactional
+  public void reviewAdded(MenuItemReview review) {
+    apply(new Delta().add(review, 1));
+  }
+
+  @Transactional
+  public void reviewsAdded(Iterable<MenuItemReview> reviews) {
+    Delta delta = new Delta();
+    reviews.forEach(review -> delta.add(review, 1));
+    apply(delta);
+  }
+
+  /** <code>before</code> holds the stars and dateReviewed the review had before the update */
+  @Transactional
+  public void reviewChanged(MenuItemReview before, MenuItemReview after) {
+    apply(new Delta().add(before, -1).add(after, 1));
+  }
+
+  @Transactional
+  public void reviewRemoved(MenuItemReview review) {
+    apply(new Delta().add(review, -1));
+  }
+
+  /** Recomputes the totals and daily rollups from the reviews table, e.g. after a bulk import in SQL. */
+  @Transactional
+  public MenuItemReviewStats rebuild() {
+    MenuItemReviewStats stats = rebuildTotals();
+    menuItemReviewDailyRollupRepository.deleteAllDays();
+    int days = menuItemReviewDailyRollupRepository.insertAllDays();
+    log.info("rebuilt menu item review daily rollups: {} days", days);
+    return stats;
+  }
+
+  private MenuItemReviewStats rebuildTotals() {
+    MenuItemReviewStats stats = menuItemReviewStatsRepository.computeTotals();
+    log.info("rebuilt menu item review stats: {}", stats);
+    return menuItemReviewStatsRepository.save(stats);
+  }
+
+  private void apply(Delta delta) {
+    int updated = menuItemReviewStatsRepository.addToTotals(MenuItemReviewStats.ALL_REVIEWS,
+        delta.reviews, delta.stars,
+        delta.histogram[1], delta.histogram[2], delta.histogram[3], delta.histogram[4], delta.histogram[5]);
+    if (updated == 0) {
+      // computeTotals runs in this transaction, so it already sees the change
+      rebuildTotals();
+    }
+
+    delta.days.forEach((day, change) -> {
+      if (change[0] == 0 && change[1] == 0) {
+        return;
+      }
+      if (menuItemReviewDailyRollupRepository.addToDay(day, change[0], change[1]) == 0) {
+        ReviewRollup counted = menuItemReviewRepository.totalsBetween(day.atStartOfDay(),
+            day.plusDays(1).atStartOfDay());
+        menuItemReviewDailyRollupRepository.save(MenuItemReviewDailyRollup.builder()
+            .dayReviewed(day)
+            .reviewCount(counted.getReviewCount())
+            .starSum(counted.getStarSum())
+            .build());
+      }
+    });
+  }
+
+  private void addRange(Map<LocalDate, ReviewRollup> buckets, RollupBucket bucket,
+      LocalDateTime start, LocalDateTime end) {
+    if (start.isBefore(end)) {
+      ReviewRollup counted = menuItemReviewRepository.totalsBetween(start, end);
+      add(buckets, bucket, start.toLocalDate(), counted.getReviewCount(), counted.getStarSum());
+    }
+  }
+
+  private static void add(Map<LocalDate, ReviewRollup> buckets, RollupBucket bucket,
+      LocalDate day, long reviewCount, long starSum) {
+    if (reviewCount == 0) {
+      return;
+    }
+    ReviewRollup rollup = buckets.computeIfAbsent(bucket.start(day), start -> new ReviewRollup(start, 0, 0));
+    rollup.setReviewCount(rollup.getReviewCount() + reviewCount);
+    rollup.setStarSum(rollup.getStarSum() + starSum);
+  }
+
+  private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  private static class Delta {
+    long reviews;
+    long stars;
+    final long[] histogram = new long[6];
+    // day -> { reviews, stars }; sorted so concurrent writers update days in the same order
+    final Map<LocalDate, long[]> days = new TreeMap<>();
+
+    Delta add(MenuItemReview review, int sign) {
+      int reviewStars = review.getStars();
+      reviews += sign;
+      stars += (long) sign * reviewStars;
+      if (reviewStars >= 1 && reviewStars <= 5) {
+        histogram[reviewStars] += sign;
+      }
+      if (review.getDateReviewed() != null) {
+        long[] day = days.computeIfAbsent(review.getDateReviewed().toLocalDate(), d -> new long[2]);
+        day[0] += sign;
+        day[1] += (long) sign * reviewStars;
+      }
+      return this;
+    }
+  }
+}
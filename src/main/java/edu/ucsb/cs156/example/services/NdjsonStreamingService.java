@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Streams query results as newline delimited JSON, one object per line.
+// See: http://ndjson.org/
+//
+// Rows are pulled from a JPA Stream inside a read-only transaction and
+// detached as soon as they are written, so memory use stays flat no matter
+// how many rows the query returns.
+
+@Slf4j
+@Service("ndjsonStreaming")
+public class NdjsonStreamingService {
+
+  /** JDBC fetch size hint for the streaming repository queries */
+  public static final String FETCH_SIZE = "500";
+
+  private static final int FLUSH_EVERY = 500;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  EntityManager entityManager;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  public <T> ResponseEntity<StreamingResponseBody> stream(Supplier<Stream<T>> query) {
+    StreamingResponseBody body = out -> {
+      TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+      transaction.setReadOnly(true);
+      transaction.executeWithoutResult(status -> {
+        try (Stream<T> rows = query.get()) {
+          writeRows(rows, out);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+
+  private <T> void writeRows(Stream<T> rows, OutputStream out) throws IOException {
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    JsonGenerator generator = mapper.getFactory().createGenerator(out);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.setRootValueSeparator(new SerializedString("\n"));
+
+    long count = 0;
+    Iterator<T> iterator = rows.iterator();
+    while (iterator.hasNext()) {
+      T row = iterator.next();
+      writer.writeValue(generator, row);
+      entityManager.detach(row);
+      if (++count % FLUSH_EVERY == 0) {
+        generator.flush();
+      }
+    }
+    if (count > 0) {
+      generator.writeRaw('\n');
+    }
+    generator.close();
+    log.info("streamed {} rows as ndjson", count);
+  }
+}
@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.entities.RecommendationCounts;
+import edu.ucsb.cs156.example.models.RecommendationInbox;
+import edu.ucsb.cs156.example.repositories.RecommendationCountsRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Keeps one recommendationcounts row per professor in step with the
+// recommendations table.
+//
+// RecommendationController calls the recommendation* methods inside the
+// transaction that writes the recommendations, and each professor touched
+// gets one atomic UPDATE that adds the deltas.  A professor's first request
+// finds no row to update; the row is then created in its own transaction
+// from the requests already committed, and the delta is added on top as
+// usual.  If two first requests race, the loser's insert fails on the
+// primary key, and it just adds its delta to the winner's row.
+//
+// Overdue is not stored: requests become overdue as time passes, without
+// any write to hook, so it is counted when asked for.
+
+@Slf4j
+@Service("recommendationCounts")
+public class RecommendationCountsService {
+
+  @Autowired
+  RecommendationCountsRepository recommendationCountsRepository;
+
+  @Autowired
+  RecommendationRepository recommendationRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  public RecommendationInbox getInbox(String professorEmail) {
+    RecommendationCounts counts = recommendationCountsRepository.findById(professorEmail)
+        .orElseGet(() -> new RecommendationCounts(professorEmail, 0, 0));
+    long overdue = recommendationRepository
+        .countByProfessorEmailAndDoneFalseAndDateNeededLessThan(professorEmail, LocalDateTime.now());
+    return new RecommendationInbox(professorEmail, counts.getPending(), counts.getDone(), overdue);
+  }
+
+  @Transactional
+  public void recommendationAdded(Recommendation recommendation) {
+    apply(new Delta().add(recommendation, 1));
+  }
+
+  @Transactional
+  public void recommendationsAdded(Iterable<Recommendation> recommendations) {
+    Delta delta = new Delta();
+    recommendations.forEach(recommendation -> delta.add(recommendation, 1));
+    apply(delta);
+  }
+
+  /** <code>before</code> holds the professorEmail and done the request had before the update */
+  @Transactional
+  public void recommendationChanged(Recommendation before, Recommendation after) {
+    apply(new Delta().add(before, -1).add(after, 1));
+  }
+
+  @Transactional
+  public void recommendationRemoved(Recommendation recommendation) {
+    apply(new Delta().add(recommendation, -1));
+  }
+
+  private void apply(Delta delta) {
+    delta.professors.forEach((professorEmail, change) -> {
+      if (change[0] == 0 && change[1] == 0) {
+        return;
+      }
+      if (recommendationCountsRepository.addToCounts(professorEmail, change[0], change[1]) == 0) {
+        createCounts(professorEmail);
+        recommendationCountsRepository.addToCounts(professorEmail, change[0], change[1]);
+      }
+    });
+  }
+
+  private void createCounts(String professorEmail) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    try {
+      transaction.executeWithoutResult(status -> recommendationCountsRepository.insertCounts(professorEmail));
+    } catch (DataIntegrityViolationException e) {
+      log.info("recommendation counts for {} were created by a concurrent request", professorEmail);
+    }
+  }
+
+  private static class Delta {
+    // professorEmail -> { pending, done }; sorted so concurrent writers lock rows in the same order
+    final Map<String, long[]> professors = new TreeMap<>();
+
+    Delta add(Recommendation recommendation, int sign) {
+      if (recommendation.getProfessorEmail() == null) {
+        return this;
+      }
+      long[] counts = professors.computeIfAbsent(recommendation.getProfessorEmail(), p -> new long[2]);
+      counts[recommendation.getDone() ? 1 : 0] += sign;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.Entity;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+// Keeps one version number per table, for the ETags of GET responses that
+// are built from a single table (see ApiController.notModified), and for
+// the keys of the caches in front of those tables (see CachingConfig).
+//
+// The controllers call bumped() after every write to the table, inside the
+// transaction that writes the rows when there is one, or else right after
+// the write commits.  Either way the new version is never visible before
+// the new rows, and since the version is read before the rows, an ETag is
+// never newer than the body it is sent with.  A request reads each table's
+// version once and keeps it until it bumps the table, so a response's ETag
+// and the cache entries its body comes from always have the same version.
+//
+// A table's first write finds no row to update; the row is then created in
+// its own transaction, starting from the current time in milliseconds so
+// that versions keep growing even if the database is recreated, and the
+// bump is applied on top as usual.  Until that first write the version is 0.
+//
+// Writes made outside the API (e.g. a bulk import in SQL) do not change the
+// version; bump it in the same SQL transaction.
+
+@Slf4j
+@Service("tableVersions")
+public class TableVersionService {
+  private static final String VERSION_ATTRIBUTE = TableVersionService.class.getName() + ".version.";
+
+  @Autowired
+  TableVersionRepository tableVersionRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  public long getVersion(Class<?> entity) {
+    String tableName = tableName(entity);
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    Object remembered = request == null ? null : request.getAttribute(VERSION_ATTRIBUTE + tableName, RequestAttributes.SCOPE_REQUEST);
+    if (remembered instanceof Long version) {
+      return version;
+    }
+    long version = tableVersionRepository.findById(tableName)
+        .map(TableVersion::getVersion)
+        .orElse(0L);
+    if (request != null) {
+      request.setAttribute(VERSION_ATTRIBUTE + tableName, version, RequestAttributes.SCOPE_REQUEST);
+    }
+    return version;
+  }
+
+  /**
+   * An ETag for the current contents of <code>entity</code>'s table.  It is
+   * weak, since the same version goes out with the gzip and the identity
+   * encoding of a body, which differ byte for byte; Tomcat compresses
+   * responses with weak ETags only.
+   */
+  public String etag(Class<?> entity) {
+    return "W/\"%s-%d\"".formatted(tableName(entity), getVersion(entity));
+  }
+
+  /** A weak ETag for another representation (e.g. "cbor") of the same contents */
+  public String etag(Class<?> entity, String representation) {
+    return "W/\"%s-%d-%s\"".formatted(tableName(entity), getVersion(entity), representation);
+  }
+
+  /** Records a write to <code>entity</code>'s table */
+  @Transactional
+  public void bumped(Class<?> entity) {
+    String tableName = tableName(entity);
+    if (tableVersionRepository.bump(tableName) == 0) {
+      createVersion(tableName);
+      tableVersionRepository.bump(tableName);
+    }
+    RequestAttributes request = RequestContextHolder.getRequestAttributes();
+    if (request != null) {
+      request.removeAttribute(VERSION_ATTRIBUTE + tableName, RequestAttributes.SCOPE_REQUEST);
+    }
+  }
+
+  static String tableName(Class<?> entity) {
+    Entity annotation = entity.getAnnotation(Entity.class);
+    return annotation == null || annotation.name().isEmpty() ? entity.getSimpleName() : annotation.name();
+  }
+
+  private void createVersion(String tableName) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    try {
+      transaction.executeWithoutResult(
+          status -> tableVersionRepository.insertVersion(tableName, System.currentTimeMillis()));
+    } catch (DataIntegrityViolationException e) {
+      log.info("table version for {} was created by a concurrent request", tableName);
+    }
+  }
+}
@@ -0,0 +1,10 @@
+-- GET /api/HelpRequest/queue and POST /api/HelpRequest/claimNext only read
+-- unsolved requests in requestTime order; a partial index keeps that scan
+-- proportional to the open queue rather than to every request ever made.
+-- JPA cannot declare partial indexes (and H2 has none), so this one exists
+-- only here.
+ALTER TABLE helprequests ADD COLUMN IF NOT EXISTS claimed_by VARCHAR(255);
+
+CREATE INDEX IF NOT EXISTS helprequests_open_queue_idx
+  ON helprequests (request_time, id)
+  WHERE solved = false;
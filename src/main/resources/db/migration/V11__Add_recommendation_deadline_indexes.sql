@@ -0,0 +1,8 @@
+-- Serve GET /api/Recommendation/due with and without professorEmail:
+-- equality on the leading columns, then a range scan in (date_needed, id)
+-- keyset order.  Match @Table(indexes = ...) on Recommendation.
+CREATE INDEX IF NOT EXISTS recommendations_done_date_needed_idx
+  ON recommendations (done, date_needed, id);
+
+CREATE INDEX IF NOT EXISTS recommendations_professor_done_date_needed_idx
+  ON recommendations (professor_email, done, date_needed, id);
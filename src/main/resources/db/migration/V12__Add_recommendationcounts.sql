@@ -0,0 +1,18 @@
+-- Per-professor counts for GET /api/Recommendation/byProfessor (see
+-- RecommendationCounts), seeded from the existing requests.  From here on
+-- the application keeps each row up to date in the same transaction as the
+-- recommendation writes.
+CREATE TABLE IF NOT EXISTS recommendationcounts (
+  professor_email VARCHAR(255) NOT NULL PRIMARY KEY,
+  pending BIGINT NOT NULL,
+  done BIGINT NOT NULL
+);
+
+INSERT INTO recommendationcounts (professor_email, pending, done)
+SELECT professor_email,
+       COUNT(*) FILTER (WHERE NOT done),
+       COUNT(*) FILTER (WHERE done)
+  FROM recommendations
+ WHERE professor_email IS NOT NULL
+ GROUP BY professor_email
+ON CONFLICT (professor_email) DO NOTHING;
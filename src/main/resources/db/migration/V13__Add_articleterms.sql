@@ -0,0 +1,24 @@
+-- Full-text index for GET /api/Article/search (see ArticleTerm), seeded from
+-- the existing articles with the same weights as ArticleSearchService:
+-- 3 per occurrence in the title, 1 per occurrence in the explanation.
+-- Words are split the way ArticleSearchService splits them, except that
+-- words longer than 64 characters are left out rather than truncated.
+CREATE TABLE IF NOT EXISTS articleterms (
+  term VARCHAR(255) NOT NULL,
+  article_id BIGINT NOT NULL,
+  weight INTEGER NOT NULL,
+  PRIMARY KEY (term, article_id)
+);
+
+CREATE INDEX IF NOT EXISTS articleterms_article_id_idx ON articleterms (article_id);
+
+INSERT INTO articleterms (term, article_id, weight)
+SELECT term, article_id, SUM(weight)
+  FROM (SELECT regexp_split_to_table(lower(title), '[^[:alnum:]]+') AS term, id AS article_id, 3 AS weight
+          FROM articles
+        UNION ALL
+        SELECT regexp_split_to_table(lower(explanation), '[^[:alnum:]]+'), id, 1
+          FROM articles) words
+ WHERE term <> '' AND length(term) <= 64
+ GROUP BY term, article_id
+ON CONFLICT (term, article_id) DO NOTHING;
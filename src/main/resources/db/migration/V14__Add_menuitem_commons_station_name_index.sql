@@ -0,0 +1,7 @@
+-- Serve GET /api/UCSBDiningCommonsMenuItem/byCommons, with and without a
+-- station: equality on dining_commons_code (and station), then a range scan
+-- in (station, name, id) keyset order.  The index holds every column of the
+-- table, so the listing never visits the heap.  Matches @Table(indexes = ...)
+-- on UCSBDiningCommonsMenuItem.
+CREATE INDEX IF NOT EXISTS ucsbdiningcommonsmenuitems_commons_station_name_idx
+  ON ucsbdiningcommonsmenuitems (dining_commons_code, station, name, id);
@@ -0,0 +1,7 @@
+-- One version number per table for the ETags of GET /api/*/all and getById
+-- (see TableVersion).  Rows are created by the application on the first
+-- write to each table, so there is nothing to seed.
+CREATE TABLE IF NOT EXISTS tableversions (
+  table_name VARCHAR(255) NOT NULL PRIMARY KEY,
+  version BIGINT NOT NULL
+);
@@ -0,0 +1,8 @@
+-- POST /api/HelpRequest/claimNext only reads unsolved requests that nobody
+-- has claimed.  The V10 index also holds claimed-but-unsolved rows, which
+-- every claim would walk past, so this one matches the claim query's
+-- predicate exactly.  V10's stays for GET /api/HelpRequest/queue, which
+-- lists claimed requests too.
+CREATE INDEX IF NOT EXISTS helprequests_unclaimed_queue_idx
+  ON helprequests (request_time, id)
+  WHERE solved = false AND claimed_by IS NULL;
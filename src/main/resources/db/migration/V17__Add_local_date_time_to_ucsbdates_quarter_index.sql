@@ -0,0 +1,8 @@
+-- GET /api/ucsbdates/quarters orders by (quarterYYYYQ, localDateTime).  With
+-- both columns in the index the range scan returns rows already in that
+-- order, so the query needs no sort.  The V6 index on quarteryyyyq alone is
+-- a prefix of this one, which also serves findAllByQuarterYYYYQ, so it is
+-- dropped.  Matches @Table(indexes = ...) on UCSBDate.
+CREATE INDEX IF NOT EXISTS ucsbdates_quarteryyyyq_local_date_time_idx
+  ON ucsbdates (quarteryyyyq, local_date_time);
+DROP INDEX IF EXISTS ucsbdates_quarteryyyyq_idx;
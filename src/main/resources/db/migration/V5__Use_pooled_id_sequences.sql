@@ -0,0 +1,30 @@
+-- Entity ids now come from the sequences that back the existing serial id
+-- columns, through Hibernate's pooled optimizer (allocationSize = 50): each
+-- nextval hands the application a block of 50 ids, so inserts no longer need
+-- the generated key back and Hibernate can batch them.
+--
+-- Each sequence is first set to the largest id in use, so that the first
+-- block handed out after the change starts above every existing row.
+-- Hibernate refuses to start if a sequence's increment does not match the
+-- allocationSize, so this must run before the new version is deployed.
+
+SELECT setval('articles_id_seq', COALESCE(MAX(id), 1)) FROM articles;
+ALTER SEQUENCE articles_id_seq INCREMENT BY 50;
+
+SELECT setval('helprequests_id_seq', COALESCE(MAX(id), 1)) FROM helprequests;
+ALTER SEQUENCE helprequests_id_seq INCREMENT BY 50;
+
+SELECT setval('menuitemreviews_item_id_seq', COALESCE(MAX(item_id), 1)) FROM menuitemreviews;
+ALTER SEQUENCE menuitemreviews_item_id_seq INCREMENT BY 50;
+
+SELECT setval('recommendations_id_seq', COALESCE(MAX(id), 1)) FROM recommendations;
+ALTER SEQUENCE recommendations_id_seq INCREMENT BY 50;
+
+SELECT setval('ucsbdates_id_seq', COALESCE(MAX(id), 1)) FROM ucsbdates;
+ALTER SEQUENCE ucsbdates_id_seq INCREMENT BY 50;
+
+SELECT setval('ucsbdiningcommonsmenuitems_id_seq', COALESCE(MAX(id), 1)) FROM ucsbdiningcommonsmenuitems;
+ALTER SEQUENCE ucsbdiningcommonsmenuitems_id_seq INCREMENT BY 50;
+
+SELECT setval('users_id_seq', COALESCE(MAX(id), 1)) FROM users;
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
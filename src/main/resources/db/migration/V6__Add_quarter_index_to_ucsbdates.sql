@@ -0,0 +1,3 @@
+-- Serves findAllByQuarterYYYYQ and the quarter range query behind
+-- GET /api/ucsbdates/quarters; matches @Table(indexes = ...) on UCSBDate.
+CREATE INDEX IF NOT EXISTS ucsbdates_quarteryyyyq_idx ON ucsbdates (quarteryyyyq);
@@ -0,0 +1,18 @@
+-- findByEmail runs on every login and every current user lookup, and the
+-- unique index is what makes creating a user on first login safe when two
+-- requests race (see CurrentUserServiceImpl).  Matches @Table(indexes = ...)
+-- on User, which Hibernate creates as a unique constraint of the same name.
+--
+-- Rows with a duplicate email can only have been created by that race; keep
+-- the oldest one, carrying over the admin flag if any copy had it.
+UPDATE users SET admin = TRUE
+  WHERE admin = FALSE
+    AND email IN (SELECT email FROM users WHERE admin = TRUE);
+
+DELETE FROM users u
+  USING users older
+  WHERE u.email = older.email
+    AND u.id > older.id;
+
+ALTER TABLE users DROP CONSTRAINT IF EXISTS users_email_idx;
+ALTER TABLE users ADD CONSTRAINT users_email_idx UNIQUE (email);
@@ -0,0 +1,26 @@
+-- Running totals for GET /api/MenuItemReview/stats (see MenuItemReviewStats),
+-- seeded from the existing reviews.  From here on the application keeps the
+-- row up to date in the same transaction as each review write.
+CREATE TABLE IF NOT EXISTS menuitemreviewstats (
+  id INTEGER NOT NULL PRIMARY KEY,
+  review_count BIGINT NOT NULL,
+  star_sum BIGINT NOT NULL,
+  one_star BIGINT NOT NULL,
+  two_stars BIGINT NOT NULL,
+  three_stars BIGINT NOT NULL,
+  four_stars BIGINT NOT NULL,
+  five_stars BIGINT NOT NULL
+);
+
+INSERT INTO menuitemreviewstats
+  (id, review_count, star_sum, one_star, two_stars, three_stars, four_stars, five_stars)
+SELECT 1,
+       COUNT(*),
+       COALESCE(SUM(stars), 0),
+       COUNT(*) FILTER (WHERE stars = 1),
+       COUNT(*) FILTER (WHERE stars = 2),
+       COUNT(*) FILTER (WHERE stars = 3),
+       COUNT(*) FILTER (WHERE stars = 4),
+       COUNT(*) FILTER (WHERE stars = 5)
+  FROM menuitemreviews
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,18 @@
+-- Per-day review counts for GET /api/MenuItemReview/rollup (see
+-- MenuItemReviewDailyRollup), seeded from the existing reviews, and the
+-- dateReviewed index behind the partial days at either end of a range.
+-- Both match the entity annotations.
+CREATE TABLE IF NOT EXISTS menuitemreviewdailyrollups (
+  day_reviewed DATE NOT NULL PRIMARY KEY,
+  review_count BIGINT NOT NULL,
+  star_sum BIGINT NOT NULL
+);
+
+INSERT INTO menuitemreviewdailyrollups (day_reviewed, review_count, star_sum)
+SELECT CAST(date_reviewed AS DATE), COUNT(*), COALESCE(SUM(stars), 0)
+  FROM menuitemreviews
+ WHERE date_reviewed IS NOT NULL
+ GROUP BY CAST(date_reviewed AS DATE)
+ON CONFLICT (day_reviewed) DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS menuitemreviews_date_reviewed_idx ON menuitemreviews (date_reviewed);
@@ -4,17 +4,23 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 @ActiveProfiles("test")
 @Import(TestConfig.class)
@@ -28,6 +34,9 @@ public abstract class ControllerTestCase {
   @Autowired
   public MockMvc mockMvc;
 
+  @MockBean
+  public TableVersionService tableVersionService;
+
   @Autowired
   public ObjectMapper mapper;
 
@@ -35,4 +44,22 @@ public abstract class ControllerTestCase {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
   }
+
+  /**
+   * A body for a mocked streaming response that writes <code>content</code>
+   * only once <code>requestReturned</code> is counted down.  MockMvc runs
+   * the body on another thread while the request thread is still adding
+   * security headers to the same mock response, which is not thread safe;
+   * count down after perform() returns, then asyncDispatch to wait for it.
+   */
+  protected static StreamingResponseBody writeAfter(CountDownLatch requestReturned, String content) {
+    return out -> {
+      try {
+        requestReturned.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+    };
+  }
 }
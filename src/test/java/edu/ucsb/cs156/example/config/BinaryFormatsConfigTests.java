@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = UCSBDatesController.class)
+@Import(BinaryFormatsConfig.class)
+public class BinaryFormatsConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UCSBDateRepository ucsbDateRepository;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  NdjsonStreamingService ndjsonStreamingService;
+
+  @Autowired
+  MappingJackson2SmileHttpMessageConverter smileConverter;
+
+  @Autowired
+  MappingJackson2CborHttpMessageConverter cborConverter;
+
+  private static final UCSBDate DATE = UCSBDate.builder()
+      .id(1L)
+      .quarterYYYYQ("20222")
+      .name("firstDayOfClasses")
+      .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+      .build();
+
+  private static List<Map<String, Object>> decode(ObjectMapper mapper, MvcResult result) throws Exception {
+    return mapper.readValue(result.getResponse().getContentAsByteArray(), new TypeReference<>() {});
+  }
+
+  @Test
+  public void json_is_the_default() {
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat(null));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("*/*"));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("application/json"));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("application/*"));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("application/json, application/cbor"));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("not a media type"));
+  }
+
+  @Test
+  public void binary_formats_are_chosen_by_accept() {
+    assertEquals(BinaryFormatsConfig.SMILE, BinaryFormatsConfig.requestedBinaryFormat("application/x-jackson-smile"));
+    assertEquals(BinaryFormatsConfig.CBOR, BinaryFormatsConfig.requestedBinaryFormat("application/cbor, */*;q=0.1"));
+    assertEquals(BinaryFormatsConfig.CBOR,
+        BinaryFormatsConfig.requestedBinaryFormat("application/json;q=0.5, application/cbor"));
+    assertNull(BinaryFormatsConfig.requestedBinaryFormat("application/cbor;q=0, application/json"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_can_be_sent_as_smile() throws Exception {
+    when(ucsbDateRepository.findAll()).thenReturn(List.of(DATE));
+    when(tableVersionService.etag(UCSBDate.class, "x-jackson-smile")).thenReturn("W/\"ucsbdates-7-x-jackson-smile\"");
+
+    MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").accept(BinaryFormatsConfig.SMILE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormatsConfig.SMILE))
+        .andExpect(header().string("ETag", "W/\"ucsbdates-7-x-jackson-smile\""))
+        .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+        .andReturn();
+
+    // the same fields and values as JSON, dates included
+    List<Map<String, Object>> dates = decode(smileConverter.getObjectMapper(), response);
+    assertEquals(mapper.readValue(mapper.writeValueAsString(List.of(DATE)), List.class), dates);
+    assertEquals("2022-01-03T00:00:00", dates.get(0).get("localDateTime"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_can_be_sent_as_cbor() throws Exception {
+    when(ucsbDateRepository.findAll()).thenReturn(List.of(DATE));
+
+    MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").accept(BinaryFormatsConfig.CBOR))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormatsConfig.CBOR))
+        .andReturn();
+
+    List<Map<String, Object>> dates = decode(cborConverter.getObjectMapper(), response);
+    assertEquals("firstDayOfClasses", dates.get(0).get("name"));
+    assertEquals("2022-01-03T00:00:00", dates.get(0).get("localDateTime"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void a_json_etag_does_not_match_the_smile_representation() throws Exception {
+    when(ucsbDateRepository.findAll()).thenReturn(List.of(DATE));
+    when(tableVersionService.etag(UCSBDate.class)).thenReturn("W/\"ucsbdates-7\"");
+    when(tableVersionService.etag(UCSBDate.class, "x-jackson-smile")).thenReturn("W/\"ucsbdates-7-x-jackson-smile\"");
+
+    mockMvc.perform(get("/api/ucsbdates/all").accept(BinaryFormatsConfig.SMILE).header("If-None-Match", "W/\"ucsbdates-7\""))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(BinaryFormatsConfig.SMILE));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void a_batch_can_be_posted_as_cbor() throws Exception {
+    UCSBDate expected = UCSBDate.builder()
+        .quarterYYYYQ("20222")
+        .name("firstDayOfClasses")
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    when(ucsbDateRepository.saveAll(List.of(expected))).thenReturn(List.of(DATE));
+
+    mockMvc.perform(post("/api/ucsbdates/post/batch")
+        .contentType(BinaryFormatsConfig.CBOR)
+        .accept(MediaType.APPLICATION_JSON)
+        .content(cborConverter.getObjectMapper().writeValueAsBytes(List.of(DATE)))
+        .with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(content().json(mapper.writeValueAsString(List.of(DATE))));
+
+    verify(ucsbDateRepository, times(1)).saveAll(List.of(expected));
+  }
+}
@@ -0,0 +1,194 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DataJpaTest
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@TestPropertySource(properties = "spring.cache.type=caffeine")
+@Import({ CachingConfig.class, TableVersionService.class })
+class CachingConfigTests {
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @Autowired
+  CachingConfig cachingConfig;
+
+  @Autowired
+  TableVersionService tableVersionService;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  private Cache commonsCache;
+
+  @BeforeEach
+  void clearCaches() {
+    cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    commonsCache = cacheManager.getCache(CachingConfig.UCSB_DINING_COMMONS);
+  }
+
+  private SimpleKey commonsKey(String code) {
+    return new SimpleKey(tableVersionService.getVersion(UCSBDiningCommons.class), code);
+  }
+
+  private UCSBDiningCommons ortega() {
+    return UCSBDiningCommons.builder().code("ortega").name("Ortega").latitude(34.410987).longitude(-119.84709).build();
+  }
+
+  @Test
+  void test_findById_reads_through_the_cache() {
+    ucsbDiningCommonsRepository.save(ortega());
+
+    Optional<UCSBDiningCommons> first = ucsbDiningCommonsRepository.findById("ortega");
+    Optional<UCSBDiningCommons> second = ucsbDiningCommonsRepository.findById("ortega");
+
+    assertEquals("Ortega", first.get().getName());
+    assertSame(first.get(), second.get());
+    assertNotNull(commonsCache.get(commonsKey("ortega")));
+  }
+
+  @Test
+  void test_findAll_reads_through_the_cache() {
+    ucsbDiningCommonsRepository.save(ortega());
+
+    Iterable<UCSBDiningCommons> first = ucsbDiningCommonsRepository.findAll();
+    Iterable<UCSBDiningCommons> second = ucsbDiningCommonsRepository.findAll();
+
+    assertEquals(List.of(ortega()), first);
+    assertSame(first, second);
+  }
+
+  @Test
+  void test_missing_rows_are_cached_too() {
+    assertEquals(Optional.empty(), ucsbDiningCommonsRepository.findById("munger-hall"));
+    assertNotNull(commonsCache.get(commonsKey("munger-hall")));
+    assertEquals(Optional.empty(), ucsbDiningCommonsRepository.findById("munger-hall"));
+  }
+
+  @Test
+  void test_writes_clear_the_cache() {
+    ucsbDiningCommonsRepository.save(ortega());
+    ucsbDiningCommonsRepository.findAll();
+    ucsbDiningCommonsRepository.findById("ortega");
+
+    UCSBDiningCommons renamed = ortega();
+    renamed.setName("Ortega Commons");
+    ucsbDiningCommonsRepository.save(renamed);
+
+    assertNull(commonsCache.get(commonsKey("ortega")));
+    assertEquals("Ortega Commons", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+
+    ucsbDiningCommonsRepository.deleteById("ortega");
+    assertEquals(Optional.empty(), ucsbDiningCommonsRepository.findById("ortega"));
+    assertEquals(List.of(), ucsbDiningCommonsRepository.findAll());
+  }
+
+  @Test
+  void test_a_version_bump_is_seen_without_clearing_the_cache() {
+    ucsbDiningCommonsRepository.save(ortega());
+    ucsbDiningCommonsRepository.findById("ortega");
+    ucsbDiningCommonsRepository.findAll();
+
+    // as another instance would write, without clearing this one's cache
+    entityManager.getEntityManager()
+        .createQuery("update ucsbdiningcommons set name = 'Ortega Commons' where code = 'ortega'")
+        .executeUpdate();
+    entityManager.clear();
+    assertEquals("Ortega", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+
+    tableVersionService.bumped(UCSBDiningCommons.class);
+
+    assertEquals("Ortega Commons", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+    assertEquals("Ortega Commons", ucsbDiningCommonsRepository.findAll().iterator().next().getName());
+  }
+
+  // outside the test transaction, so each call gets its own persistence
+  // context, as separate requests do
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void test_rows_loaded_for_an_update_are_not_the_cached_instances() {
+    ucsbDiningCommonsRepository.save(ortega());
+    try {
+      UCSBDiningCommons cached = ucsbDiningCommonsRepository.findById("ortega").get();
+      UCSBDiningCommons forUpdate = ucsbDiningCommonsRepository.findUncachedByCode("ortega").get();
+      assertNotSame(cached, forUpdate);
+
+      // an update that fails before it is saved
+      forUpdate.setName("Ortega Commons");
+
+      assertEquals("Ortega", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+    } finally {
+      ucsbDiningCommonsRepository.deleteAll();
+    }
+  }
+
+  @Test
+  void test_the_caches_are_separate() {
+    ucsbOrganizationRepository.save(UCSBOrganization.builder().orgCode("ortega").orgTranslation("Ortega Org").build());
+    ucsbDiningCommonsRepository.save(ortega());
+
+    assertEquals("Ortega", ucsbDiningCommonsRepository.findById("ortega").get().getName());
+    assertEquals("Ortega Org", ucsbOrganizationRepository.findById("ortega").get().getOrgTranslation());
+
+    ucsbOrganizationRepository.deleteAll();
+    assertNotNull(commonsCache.get(commonsKey("ortega")));
+  }
+
+  @Test
+  void test_cache_hit_ratio_is_published_for_each_cache() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    cachingConfig.cacheHitRatio(cacheManager).bindTo(registry);
+    ucsbDiningCommonsRepository.save(ortega());
+
+    ucsbDiningCommonsRepository.findById("ortega");
+    ucsbDiningCommonsRepository.findById("ortega");
+
+    // the stats run from startup, so earlier tests count too
+    CacheStats stats = ((CaffeineCache) commonsCache).getNativeCache().stats();
+    double hitRatio = registry.get("cache.hit.ratio").tag("cache", CachingConfig.UCSB_DINING_COMMONS).gauge().value();
+    assertEquals(stats.hitRate(), hitRatio, 0.0001);
+    assertTrue(stats.hitCount() > 0);
+    assertNotNull(registry.get("cache.hit.ratio").tag("cache", CachingConfig.UCSB_ORGANIZATIONS).gauge());
+  }
+}
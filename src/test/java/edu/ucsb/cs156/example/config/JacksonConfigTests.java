@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import edu.ucsb.cs156.example.entities.User;
+
+@JsonTest
+@Import(JacksonConfig.class)
+class JacksonConfigTests {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private static final User USER = User.builder()
+      .id(1L)
+      .email("cgaucho@ucsb.edu")
+      .googleSub("115856948234298493496")
+      .pictureUrl("https://lh3.googleusercontent.com/a/photo.jpg")
+      .fullName("Chris Gaucho")
+      .givenName("Chris")
+      .familyName("Gaucho")
+      .emailVerified(true)
+      .locale("en")
+      .hostedDomain("ucsb.edu")
+      .admin(true)
+      .build();
+
+  @Test
+  void the_application_mapper_uses_blackbird() {
+    assertTrue(mapper.getRegisteredModuleIds().contains(new BlackbirdModule().getTypeId()));
+  }
+
+  @Test
+  void users_are_written_as_without_blackbird() throws Exception {
+    ObjectMapper reflective = Jackson2ObjectMapperBuilder.json().build();
+    List<User> users = List.of(USER, User.builder().id(2L).build());
+
+    assertEquals(reflective.writeValueAsString(users), mapper.writeValueAsString(users));
+  }
+
+  @Test
+  void users_are_read_back_unchanged() throws Exception {
+    String json = mapper.writeValueAsString(List.of(USER));
+
+    assertEquals(List.of(USER), mapper.readValue(json, new TypeReference<List<User>>() {}));
+  }
+}
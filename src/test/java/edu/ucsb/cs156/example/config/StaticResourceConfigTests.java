@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.FrontendController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// serves the fixtures in src/test/resources/public/static/js
+@WebMvcTest(controllers = FrontendController.class)
+public class StaticResourceConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void hashed_bundles_are_cached_for_a_year() throws Exception {
+    mockMvc.perform(get("/static/js/main.0123abcd.js"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Cache-Control", "max-age=31536000, public"));
+  }
+
+  @Test
+  public void the_gzipped_copy_is_sent_to_clients_that_accept_it() throws Exception {
+    MvcResult response = mockMvc.perform(get("/static/js/main.0123abcd.js").header("Accept-Encoding", "br, gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andExpect(header().string("Vary", "Accept-Encoding"))
+        .andExpect(header().string("Cache-Control", "max-age=31536000, public"))
+        .andReturn();
+
+    byte[] body = response.getResponse().getContentAsByteArray();
+    assertEquals((byte) 0x1f, body[0]);
+    assertEquals((byte) 0x8b, body[1]);
+  }
+
+  @Test
+  public void other_clients_get_the_original() throws Exception {
+    MvcResult response = mockMvc.perform(get("/static/js/main.0123abcd.js"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andReturn();
+
+    assertTrue(response.getResponse().getContentAsString().contains("hello from a hashed bundle"));
+  }
+
+  @Test
+  public void missing_bundles_are_not_found() throws Exception {
+    mockMvc.perform(get("/static/js/main.missing.js").header("Accept-Encoding", "gzip"))
+        .andExpect(status().isNotFound());
+  }
+}
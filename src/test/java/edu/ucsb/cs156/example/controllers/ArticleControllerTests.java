@@ -5,14 +5,22 @@ import edu.ucsb.cs156.example.repositories.ArticleRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.services.ArticleSearchService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -22,8 +30,11 @@ import java.time.LocalDateTime;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,6 +53,12 @@ public class ArticleControllerTests extends ControllerTestCase {
   @MockBean
   UserRepository userRepository;
 
+  @MockBean
+  NdjsonStreamingService ndjsonStreamingService;
+
+  @MockBean
+  ArticleSearchService articleSearchService;
+
   // Authorization tests for /api/Article/admin/all
 
   @Test
@@ -150,6 +167,8 @@ public class ArticleControllerTests extends ControllerTestCase {
 
     // assert
     verify(articleRepository, times(1)).save(article);
+    verify(tableVersionService, times(1)).bumped(Article.class);
+    verify(articleSearchService, times(1)).articleAdded(article);
     String expectedJson = mapper.writeValueAsString(article);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -228,6 +247,8 @@ public class ArticleControllerTests extends ControllerTestCase {
     // assert
     verify(articleRepository, times(1)).findById(18L);
     verify(articleRepository, times(1)).save(edited);
+    verify(tableVersionService, times(1)).bumped(Article.class);
+    verify(articleSearchService, times(1)).articleChanged(edited);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(requestBody, responseString);
   }
@@ -259,6 +280,7 @@ public class ArticleControllerTests extends ControllerTestCase {
 
     // assert
     verify(articleRepository, times(1)).findById(67L);
+    verify(articleSearchService, times(0)).articleChanged(any());
     Map<String, Object> json = responseToJson(response);
     assertEquals("Article with id 67 not found", json.get("message"));
   }
@@ -286,6 +308,8 @@ public class ArticleControllerTests extends ControllerTestCase {
     // assert
     verify(articleRepository, times(1)).findById(15L);
     verify(articleRepository, times(1)).delete(any());
+    verify(tableVersionService, times(1)).bumped(Article.class);
+    verify(articleSearchService, times(1)).articleRemoved(article);
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Article with id 15 deleted", json.get("message"));
@@ -311,4 +335,307 @@ public class ArticleControllerTests extends ControllerTestCase {
     assertEquals("Article with id 15 not found", json.get("message"));
   }
 
+  // Tests for the keyset paginated listing, /all?limit=
+
+  @Test
+  public void logged_out_users_cannot_get_a_page() throws Exception {
+    mockMvc.perform(get("/api/Article/all?limit=2"))
+            .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_can_get_a_page_of_articles_with_a_next_cursor() throws Exception {
+
+    // arrange
+
+    Article first = Article.builder().id(4L).title("Using testing-playground with React Testing Library").build();
+    Article second = Article.builder().id(5L).title("Handy Spring Utility Classes").build();
+    Article third = Article.builder().id(6L).title("Tips for writing JUnit tests").build();
+
+    when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+            .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/Article/all?after=3&limit=2"))
+            .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L, PageRequest.of(0, 3));
+    String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+            .content(Arrays.asList(first, second))
+            .next(5L)
+            .build());
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void last_page_of_articles_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+    // arrange
+
+    Article first = Article.builder().id(4L).title("Using testing-playground with React Testing Library").build();
+
+    when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+            .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/Article/all?limit=5000"))
+            .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(1, ((List<?>) json.get("content")).size());
+    assertEquals(null, json.get("next"));
+  }
+
+  // Tests for full-text search, /search
+
+  @Test
+  public void logged_out_users_cannot_search() throws Exception {
+    mockMvc.perform(get("/api/Article/search?q=spring"))
+            .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_can_search_articles() throws Exception {
+
+    // arrange
+
+    Article first = Article.builder().id(5L).title("Handy Spring Utility Classes").build();
+    Article second = Article.builder().id(9L).title("Spring Boot testing").build();
+    SliceImpl<Article> results = new SliceImpl<>(Arrays.asList(first, second), PageRequest.of(0, 20), true);
+
+    when(articleSearchService.search(eq("spring utility"), eq(PageRequest.of(0, 20)))).thenReturn(results);
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/Article/search?q=spring utility"))
+            .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(articleSearchService, times(1)).search("spring utility", PageRequest.of(0, 20));
+    verify(articleRepository, times(0)).findAll();
+    String expectedJson = mapper.writeValueAsString(results);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void search_passes_the_page_and_caps_the_limit() throws Exception {
+
+    // arrange
+
+    when(articleSearchService.search(eq("junit"), eq(PageRequest.of(2, 1000))))
+            .thenReturn(new SliceImpl<>(new ArrayList<>(), PageRequest.of(2, 1000), false));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/Article/search?q=junit&page=2&limit=5000"))
+            .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(articleSearchService, times(1)).search("junit", PageRequest.of(2, 1000));
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(0, ((List<?>) json.get("content")).size());
+    assertEquals(true, json.get("last"));
+  }
+
+  // Tests for conditional GET with the table's ETag
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+    when(tableVersionService.etag(Article.class)).thenReturn("W/\"articles-7\"");
+    when(articleRepository.findAll()).thenReturn(new ArrayList<>());
+
+    mockMvc.perform(get("/api/Article/all"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "W/\"articles-7\""))
+            .andExpect(header().string("Cache-Control", "no-cache"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_not_modified_while_the_etag_matches() throws Exception {
+    when(tableVersionService.etag(Article.class)).thenReturn("W/\"articles-7\"");
+
+    MvcResult response = mockMvc.perform(get("/api/Article/all").header("If-None-Match", "W/\"articles-7\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "W/\"articles-7\""))
+            .andReturn();
+
+    verify(articleRepository, times(0)).findAll();
+    assertEquals("", response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+    when(tableVersionService.etag(Article.class)).thenReturn("W/\"articles-7\"");
+
+    mockMvc.perform(get("/api/Article?id=7").header("If-None-Match", "W/\"articles-7\""))
+            .andExpect(status().isNotModified());
+
+    verify(articleRepository, times(0)).findById(any());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_sent_again_once_the_table_changes() throws Exception {
+    when(tableVersionService.etag(Article.class)).thenReturn("W/\"articles-8\"");
+    when(articleRepository.findAll()).thenReturn(new ArrayList<>());
+
+    mockMvc.perform(get("/api/Article/all").header("If-None-Match", "W/\"articles-7\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "W/\"articles-8\""));
+
+    verify(articleRepository, times(1)).findAll();
+  }
+
+  // Tests for streaming /all as newline delimited JSON
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+    // arrange
+
+    CountDownLatch requestReturned = new CountDownLatch(1);
+    StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+    when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+    // act
+    MvcResult result = mockMvc.perform(get("/api/Article/all").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted()).andReturn();
+    requestReturned.countDown();
+    mockMvc.perform(asyncDispatch(result))
+            .andExpect(content().string("{}\n"));
+
+    // assert
+
+    ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+    verify(ndjsonStreamingService, times(1)).stream(query.capture());
+    query.getValue().get();
+    verify(articleRepository, times(1)).streamAll();
+    verify(articleRepository, times(0)).findAll();
+  }
+
+  // Tests for POST /api/Article/post/batch
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+    mockMvc.perform(post("/api/Article/post/batch"))
+            .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void an_admin_user_can_post_a_batch_of_articles_and_they_are_saved_with_new_ids() throws Exception {
+    // arrange
+
+    Article sent1 = Article.builder()
+            .id(7L)
+            .title("Using testing-playground")
+            .url("https://dev.to/katieraby/using-testing-playground")
+            .explanation("Helpful")
+            .email("phtcon@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+    Article sent2 = Article.builder()
+            .id(8L)
+            .title("Handy Spring Boot tips")
+            .url("https://www.baeldung.com/spring-boot")
+            .explanation("Reference")
+            .email("cgaucho@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+    Article expected1 = Article.builder()
+            .title("Using testing-playground")
+            .url("https://dev.to/katieraby/using-testing-playground")
+            .explanation("Helpful")
+            .email("phtcon@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+    Article expected2 = Article.builder()
+            .title("Handy Spring Boot tips")
+            .url("https://www.baeldung.com/spring-boot")
+            .explanation("Reference")
+            .email("cgaucho@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+    List<Article> expected = List.of(expected1, expected2);
+    when(articleRepository.saveAll(eq(expected))).thenReturn(expected);
+
+    // act
+    MvcResult response = mockMvc.perform(
+            post("/api/Article/post/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                .with(csrf()))
+            .andExpect(status().isOk()).andReturn();
+
+    // assert
+    // ids sent by the client are ignored; the database assigns new ones
+    verify(articleRepository, times(1)).saveAll(expected);
+    verify(tableVersionService, times(1)).bumped(Article.class);
+    verify(articleSearchService, times(1)).articlesAdded(expected);
+    String expectedJson = mapper.writeValueAsString(expected);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+    // arrange
+
+    Article valid = Article.builder()
+            .title("Using testing-playground")
+            .url("https://dev.to/katieraby/using-testing-playground")
+            .explanation("Helpful")
+            .email("phtcon@ucsb.edu")
+            .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .build();
+
+    Article invalid = Article.builder()
+            .title(" ")
+            .url("https://www.baeldung.com/spring-boot")
+            .explanation("Reference")
+            .email("cgaucho@ucsb.edu")
+            .dateAdded(null)
+            .build();
+
+    // act
+    MvcResult response = mockMvc.perform(
+            post("/api/Article/post/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                .with(csrf()))
+            .andExpect(status().isBadRequest()).andReturn();
+
+    // assert
+    verify(articleRepository, times(0)).saveAll(any());
+    verify(articleSearchService, times(0)).articlesAdded(any());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("BatchValidationException", json.get("type"));
+    assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+    assertEquals(List.of(
+            Map.of("index", 1, "field", "dateAdded", "message", "must not be null"),
+            Map.of("index", 1, "field", "title", "message", "must not be blank")), json.get("errors"));
+  }
 }
@@ -3,21 +3,35 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.HelpRequestChange;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.services.HelpRequestEventService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hibernate.graph.internal.parse.HEGLTokenTypes;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,6 +40,8 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -36,6 +52,7 @@ import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = HelpRequestController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class HelpRequestControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -44,6 +61,19 @@ public class HelpRequestControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
+        @MockBean
+        HelpRequestEventService helpRequestEventService;
+
+        @Autowired
+        ApplicationEvents applicationEvents;
+
+        private List<HelpRequestChange> publishedChanges() {
+                return applicationEvents.stream(HelpRequestChange.class).collect(Collectors.toList());
+        }
+
         // Authorization tests for /api/HelpRequest/admin/all
 
         @Test
@@ -92,6 +122,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(helpRequestRepository, times(1)).save(request);
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(new HelpRequestChange(HelpRequestChange.Type.CREATED, request)), publishedChanges());
                 String expectedJson = mapper.writeValueAsString(request);
                 String responseString = response.getResponse().getContentAsString();
                 System.out.println(expectedJson);
@@ -123,6 +155,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(helpRequestRepository, times(1)).save(request);
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(new HelpRequestChange(HelpRequestChange.Type.CREATED, request)), publishedChanges());
                 String expectedJson = mapper.writeValueAsString(request);
                 String responseString = response.getResponse().getContentAsString();
                 System.out.println(expectedJson);
@@ -266,6 +300,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                 // assert
                 verify(helpRequestRepository, times(1)).findById(67L);
                 verify(helpRequestRepository, times(1)).save(requestEdited); // should be saved with correct user
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(new HelpRequestChange(HelpRequestChange.Type.UPDATED, requestEdited)), publishedChanges());
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -333,6 +369,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                 // assert
                 verify(helpRequestRepository, times(1)).findById(15L);
                 verify(helpRequestRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(new HelpRequestChange(HelpRequestChange.Type.DELETED, request1)), publishedChanges());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -357,4 +395,401 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 not found", json.get("message"));
         }
-}
\ No newline at end of file
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/HelpRequest/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_requests_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                HelpRequest first = HelpRequest.builder().id(4L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-5pm-3").build();
+                HelpRequest second = HelpRequest.builder().id(5L).requesterEmail("ldelplaya@ucsb.edu").teamId("s22-6pm-4").build();
+                HelpRequest third = HelpRequest.builder().id(6L).requesterEmail("pdg@ucsb.edu").teamId("s22-7pm-2").build();
+
+                when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/HelpRequest/all?after=3&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next(5L)
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_requests_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                HelpRequest first = HelpRequest.builder().id(4L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-5pm-3").build();
+
+                when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/HelpRequest/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(HelpRequest.class)).thenReturn("W/\"helprequests-7\"");
+                when(helpRequestRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/HelpRequest/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"helprequests-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(HelpRequest.class)).thenReturn("W/\"helprequests-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/HelpRequest/all").header("If-None-Match", "W/\"helprequests-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"helprequests-7\""))
+                                .andReturn();
+
+                verify(helpRequestRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(HelpRequest.class)).thenReturn("W/\"helprequests-7\"");
+
+                mockMvc.perform(get("/api/HelpRequest?id=7").header("If-None-Match", "W/\"helprequests-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(helpRequestRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(HelpRequest.class)).thenReturn("W/\"helprequests-8\"");
+                when(helpRequestRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/HelpRequest/all").header("If-None-Match", "W/\"helprequests-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"helprequests-8\""));
+
+                verify(helpRequestRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/HelpRequest/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(helpRequestRepository, times(1)).streamAll();
+                verify(helpRequestRepository, times(0)).findAll();
+        }
+
+        // Tests for the Server-Sent Events stream, /stream
+
+        @Test
+        public void logged_out_users_cannot_subscribe_to_changes() throws Exception {
+                mockMvc.perform(get("/api/HelpRequest/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_subscribe_to_changes() throws Exception {
+
+                // arrange
+
+                when(helpRequestEventService.subscribe()).thenReturn(new SseEmitter());
+
+                // act
+                mockMvc.perform(get("/api/HelpRequest/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                                .andExpect(request().asyncStarted());
+
+                // assert
+                verify(helpRequestEventService, times(1)).subscribe();
+                verify(helpRequestRepository, times(0)).findAll();
+        }
+
+        // Tests for the open queue, /queue and /claimNext
+
+        @Test
+        public void logged_out_users_cannot_get_the_queue() throws Exception {
+                mockMvc.perform(get("/api/HelpRequest/queue"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_unsolved_requests_oldest_first() throws Exception {
+
+                // arrange
+
+                HelpRequest older = HelpRequest.builder()
+                                .id(2L)
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("s22-5pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-04-20T17:35"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+
+                HelpRequest newer = HelpRequest.builder()
+                                .id(1L)
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .teamId("s22-6pm-4")
+                                .tableOrBreakoutRoom("11")
+                                .requestTime(LocalDateTime.parse("2022-04-20T18:31"))
+                                .explanation("Dokku problems")
+                                .solved(false)
+                                .claimedBy("ta@ucsb.edu")
+                                .build();
+
+                when(helpRequestRepository.findBySolvedFalseOrderByRequestTimeAscIdAsc()).thenReturn(List.of(older, newer));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/HelpRequest/queue"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).findBySolvedFalseOrderByRequestTimeAscIdAsc();
+                verify(helpRequestRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(List.of(older, newer));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @Test
+        public void logged_out_users_cannot_claim() throws Exception {
+                mockMvc.perform(post("/api/HelpRequest/claimNext").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_claims_the_oldest_unclaimed_request() throws Exception {
+
+                // arrange
+
+                HelpRequest oldest = HelpRequest.builder()
+                                .id(2L)
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("s22-5pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-04-20T17:35"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+
+                HelpRequest claimed = HelpRequest.builder()
+                                .id(2L)
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("s22-5pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-04-20T17:35"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .claimedBy("user@example.org")
+                                .build();
+
+                when(helpRequestRepository.findUnclaimedForUpdate(eq(PageRequest.of(0, 1)))).thenReturn(List.of(oldest));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/HelpRequest/claimNext").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).findUnclaimedForUpdate(PageRequest.of(0, 1));
+                verify(helpRequestRepository, times(1)).save(claimed);
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(new HelpRequestChange(HelpRequestChange.Type.UPDATED, claimed)), publishedChanges());
+                String expectedJson = mapper.writeValueAsString(claimed);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void claiming_when_the_queue_is_empty_returns_no_content() throws Exception {
+
+                // arrange
+
+                when(helpRequestRepository.findUnclaimedForUpdate(eq(PageRequest.of(0, 1)))).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/HelpRequest/claimNext").with(csrf()))
+                                .andExpect(status().isNoContent()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(0)).save(any());
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        // Tests for POST /api/HelpRequest/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/HelpRequest/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_help_requests_and_they_are_saved_with_new_ids() throws Exception {
+                // arrange
+
+                HelpRequest sent1 = HelpRequest.builder()
+                                .id(7L)
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("f22-7pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+
+                HelpRequest sent2 = HelpRequest.builder()
+                                .id(8L)
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .teamId("f22-7pm-4")
+                                .tableOrBreakoutRoom("8")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Dokku problems")
+                                .solved(true)
+                                .build();
+
+                HelpRequest expected1 = HelpRequest.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("f22-7pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+
+                HelpRequest expected2 = HelpRequest.builder()
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .teamId("f22-7pm-4")
+                                .tableOrBreakoutRoom("8")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Dokku problems")
+                                .solved(true)
+                                .build();
+
+                List<HelpRequest> expected = List.of(expected1, expected2);
+                when(helpRequestRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/HelpRequest/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                // ids sent by the client are ignored; the database assigns new ones
+                verify(helpRequestRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(HelpRequest.class);
+                assertEquals(List.of(
+                                new HelpRequestChange(HelpRequestChange.Type.CREATED, expected.get(0)),
+                                new HelpRequestChange(HelpRequestChange.Type.CREATED, expected.get(1))), publishedChanges());
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                HelpRequest valid = HelpRequest.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("f22-7pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+
+                HelpRequest invalid = HelpRequest.builder()
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .teamId(" ")
+                                .tableOrBreakoutRoom("8")
+                                .requestTime(null)
+                                .explanation("Dokku problems")
+                                .solved(true)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/HelpRequest/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "requestTime", "message", "must not be null"),
+                                Map.of("index", 1, "field", "teamId", "message", "must not be blank")), json.get("errors"));
+        }
+}
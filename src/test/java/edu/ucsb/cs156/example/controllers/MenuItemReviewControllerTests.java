@@ -3,27 +3,41 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.ReviewRollup;
+import edu.ucsb.cs156.example.models.RollupBucket;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,6 +56,12 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
+        @MockBean
+        MenuItemReviewStatsService menuItemReviewStatsService;
+
         // Authorization tests for /api/MenuItemReview/admin/all
 
         @Test
@@ -194,6 +214,8 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(menuItemReviewRepository, times(1)).save(menuItemReview1);
+                verify(tableVersionService, times(1)).bumped(MenuItemReview.class);
+                verify(menuItemReviewStatsService, times(1)).reviewAdded(menuItemReview1);
                 String expectedJson = mapper.writeValueAsString(menuItemReview1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -237,6 +259,8 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 // assert
                 verify(menuItemReviewRepository, times(1)).findById(123L);
                 verify(menuItemReviewRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(MenuItemReview.class);
+                verify(menuItemReviewStatsService, times(1)).reviewRemoved(menuItemReview1);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 123 deleted", json.get("message"));
@@ -315,6 +339,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 // assert
                 verify(menuItemReviewRepository, times(1)).findById(123L);
                 verify(menuItemReviewRepository, times(1)).save(menuItemReviewEdited); // should be saved with correct user
+                verify(tableVersionService, times(1)).bumped(MenuItemReview.class);
+                MenuItemReview before = MenuItemReview.builder().stars(5).dateReviewed(ldt1).build();
+                verify(menuItemReviewStatsService, times(1)).reviewChanged(before, menuItemReviewEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -352,4 +379,344 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 assertEquals("MenuItemReview with id 123 not found", json.get("message"));
 
         }
-}
\ No newline at end of file
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_reviews_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                MenuItemReview first = MenuItemReview.builder().itemId(4L).reviewerEmail("test_email@ucsb.edu").stars(5).build();
+                MenuItemReview second = MenuItemReview.builder().itemId(5L).reviewerEmail("test_email1@ucsb.edu").stars(3).build();
+                MenuItemReview third = MenuItemReview.builder().itemId(6L).reviewerEmail("test_email2@ucsb.edu").stars(1).build();
+
+                when(menuItemReviewRepository.findByItemIdGreaterThanOrderByItemIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/all?after=3&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(menuItemReviewRepository, times(1)).findByItemIdGreaterThanOrderByItemIdAsc(3L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next(5L)
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_reviews_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                MenuItemReview first = MenuItemReview.builder().itemId(4L).reviewerEmail("test_email@ucsb.edu").stars(5).build();
+
+                when(menuItemReviewRepository.findByItemIdGreaterThanOrderByItemIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(menuItemReviewRepository, times(1)).findByItemIdGreaterThanOrderByItemIdAsc(0L, PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(MenuItemReview.class)).thenReturn("W/\"menuitemreviews-7\"");
+                when(menuItemReviewRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/MenuItemReview/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"menuitemreviews-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(MenuItemReview.class)).thenReturn("W/\"menuitemreviews-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/all").header("If-None-Match", "W/\"menuitemreviews-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"menuitemreviews-7\""))
+                                .andReturn();
+
+                verify(menuItemReviewRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(MenuItemReview.class)).thenReturn("W/\"menuitemreviews-7\"");
+
+                mockMvc.perform(get("/api/MenuItemReview?id=7").header("If-None-Match", "W/\"menuitemreviews-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(menuItemReviewRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(MenuItemReview.class)).thenReturn("W/\"menuitemreviews-8\"");
+                when(menuItemReviewRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/MenuItemReview/all").header("If-None-Match", "W/\"menuitemreviews-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"menuitemreviews-8\""));
+
+                verify(menuItemReviewRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/MenuItemReview/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(menuItemReviewRepository, times(1)).streamAll();
+                verify(menuItemReviewRepository, times(0)).findAll();
+        }
+
+        // Tests for the star rating totals, /stats
+
+        @Test
+        public void logged_out_users_cannot_get_stats() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/stats"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_star_rating_totals() throws Exception {
+
+                // arrange
+
+                MenuItemReviewStats stats = MenuItemReviewStats.builder()
+                                .id(MenuItemReviewStats.ALL_REVIEWS)
+                                .reviewCount(4)
+                                .starSum(14)
+                                .twoStars(1)
+                                .fourStars(2)
+                                .fiveStars(1)
+                                .build();
+                when(menuItemReviewStatsService.getStats()).thenReturn(stats);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/stats"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewStatsService, times(1)).getStats();
+                verify(menuItemReviewRepository, times(0)).findAll();
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(4, json.get("reviewCount"));
+                assertEquals(3.5, json.get("averageStars"));
+                assertEquals(2, json.get("fourStars"));
+        }
+
+        // Tests for the per day and per week totals, /rollup
+
+        @Test
+        public void logged_out_users_cannot_get_a_rollup() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/rollup?from=2022-01-01T00:00:00&to=2022-02-01T00:00:00"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_daily_rollup_by_default() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2022-01-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-02-01T00:00:00");
+                List<ReviewRollup> rollup = List.of(
+                                new ReviewRollup(LocalDate.parse("2022-01-03"), 2, 8),
+                                new ReviewRollup(LocalDate.parse("2022-01-04"), 1, 1));
+                when(menuItemReviewStatsService.getRollup(from, to, RollupBucket.DAY)).thenReturn(rollup);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/rollup?from=2022-01-01T00:00:00&to=2022-02-01T00:00:00"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewStatsService, times(1)).getRollup(from, to, RollupBucket.DAY);
+                String expectedJson = mapper.writeValueAsString(rollup);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_weekly_rollup() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2022-01-03T12:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-01-17T00:00:00");
+                List<ReviewRollup> rollup = List.of(new ReviewRollup(LocalDate.parse("2022-01-03"), 4, 14));
+                when(menuItemReviewStatsService.getRollup(from, to, RollupBucket.WEEK)).thenReturn(rollup);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/rollup?from=2022-01-03T12:00:00&to=2022-01-17T00:00:00&bucket=WEEK"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewStatsService, times(1)).getRollup(from, to, RollupBucket.WEEK);
+                List<?> json = mapper.readValue(response.getResponse().getContentAsString(), List.class);
+                assertEquals(Map.of("start", "2022-01-03", "reviewCount", 4, "starSum", 14, "averageStars", 3.5), json.get(0));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_unknown_rollup_bucket_is_a_bad_request() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/rollup?from=2022-01-01T00:00:00&to=2022-02-01T00:00:00&bucket=YEAR"))
+                                .andExpect(status().isBadRequest());
+        }
+
+        // Tests for POST /api/MenuItemReview/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/MenuItemReview/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_menuitemreviews_and_they_are_saved_with_new_ids() throws Exception {
+                // arrange
+
+                MenuItemReview sent1 = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("test_email@ucsb.edu")
+                                .stars(5)
+                                .comments("amazing")
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                MenuItemReview sent2 = MenuItemReview.builder()
+                                .itemId(8L)
+                                .reviewerEmail("test_email2@ucsb.edu")
+                                .stars(1)
+                                .comments("trash")
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                MenuItemReview expected1 = MenuItemReview.builder()
+                                .reviewerEmail("test_email@ucsb.edu")
+                                .stars(5)
+                                .comments("amazing")
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                MenuItemReview expected2 = MenuItemReview.builder()
+                                .reviewerEmail("test_email2@ucsb.edu")
+                                .stars(1)
+                                .comments("trash")
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                List<MenuItemReview> expected = List.of(expected1, expected2);
+                when(menuItemReviewRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/MenuItemReview/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                // ids sent by the client are ignored; the database assigns new ones
+                verify(menuItemReviewRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(MenuItemReview.class);
+                verify(menuItemReviewStatsService, times(1)).reviewsAdded(expected);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                MenuItemReview valid = MenuItemReview.builder()
+                                .reviewerEmail("test_email@ucsb.edu")
+                                .stars(5)
+                                .comments("amazing")
+                                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                MenuItemReview invalid = MenuItemReview.builder()
+                                .reviewerEmail(" ")
+                                .stars(1)
+                                .comments("trash")
+                                .dateReviewed(null)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/MenuItemReview/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "dateReviewed", "message", "must not be null"),
+                                Map.of("index", 1, "field", "reviewerEmail", "message", "must not be blank")), json.get("errors"));
+        }
+}
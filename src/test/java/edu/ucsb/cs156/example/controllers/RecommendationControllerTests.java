@@ -3,6 +3,11 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.DeadlineCursor;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.RecommendationInbox;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
+import edu.ucsb.cs156.example.services.RecommendationCountsService;
 import edu.ucsb.cs156.example.entities.Recommendation;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
@@ -10,14 +15,19 @@ import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,6 +36,8 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -44,6 +56,12 @@ public class RecommendationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
+        @MockBean
+        RecommendationCountsService recommendationCountsService;
+
         // Authorization tests for /api/Recommendation/admin/all
 
         @Test
@@ -212,6 +230,8 @@ public class RecommendationControllerTests extends ControllerTestCase {
 
                 verify(recommendationRepository, times(1)).findById(123L);
                 verify(recommendationRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(Recommendation.class);
+                verify(recommendationCountsService, times(1)).recommendationRemoved(recommendation1);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation Request with id 123 deleted", json.get("message"));
@@ -267,6 +287,8 @@ public class RecommendationControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(recommendationRepository, times(1)).save(recommendation1);
+                verify(tableVersionService, times(1)).bumped(Recommendation.class);
+                verify(recommendationCountsService, times(1)).recommendationAdded(recommendation1);
                 String expectedJson = mapper.writeValueAsString(recommendation1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -316,6 +338,9 @@ public class RecommendationControllerTests extends ControllerTestCase {
                 // assert
                 verify(recommendationRepository, times(1)).findById(67L);
                 verify(recommendationRepository, times(1)).save(recommendation2); // should be saved with correct user
+                verify(tableVersionService, times(1)).bumped(Recommendation.class);
+                Recommendation before = Recommendation.builder().professorEmail("premail").done(true).build();
+                verify(recommendationCountsService, times(1)).recommendationChanged(before, recommendation2);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -353,7 +378,387 @@ public class RecommendationControllerTests extends ControllerTestCase {
                 verify(recommendationRepository, times(1)).findById(67L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 67 not found", json.get("message"));
+                verify(recommendationCountsService, times(0)).recommendationChanged(any(), any());
+
+        }
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_recommendations_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                Recommendation first = Recommendation.builder().id(4L).requesterEmail("cgaucho@ucsb.edu").professorEmail("phtcon@ucsb.edu").build();
+                Recommendation second = Recommendation.builder().id(5L).requesterEmail("ldelplaya@ucsb.edu").professorEmail("phtcon@ucsb.edu").build();
+                Recommendation third = Recommendation.builder().id(6L).requesterEmail("pdg@ucsb.edu").professorEmail("richert@ucsb.edu").build();
+
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/all?after=3&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next(5L)
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_recommendations_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                Recommendation first = Recommendation.builder().id(4L).requesterEmail("cgaucho@ucsb.edu").professorEmail("phtcon@ucsb.edu").build();
+
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for the deadline ordered listing, /due
+
+        @Test
+        public void logged_out_users_cannot_get_due_recommendations() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/due?from=2022-05-01T00:00:00&to=2022-05-08T00:00:00"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_first_page_of_recommendations_due_in_a_week() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2022-05-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-05-08T00:00:00");
+
+                Recommendation first = Recommendation.builder().id(7L).professorEmail("phtcon@ucsb.edu")
+                                .dateNeeded(LocalDateTime.parse("2022-05-02T00:00:00")).build();
+                Recommendation second = Recommendation.builder().id(3L).professorEmail("ziad.matni@ucsb.edu")
+                                .dateNeeded(LocalDateTime.parse("2022-05-03T00:00:00")).build();
+                Recommendation third = Recommendation.builder().id(5L).professorEmail("phtcon@ucsb.edu")
+                                .dateNeeded(LocalDateTime.parse("2022-05-03T00:00:00")).build();
+
+                when(recommendationRepository.findDue(eq(false), eq(from), eq(0L), eq(to), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/due?from=2022-05-01T00:00:00&to=2022-05-08T00:00:00&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findDue(false, from, 0L, to, PageRequest.of(0, 3));
+                verify(recommendationRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                                .content(Arrays.asList(first, second))
+                                .next(new DeadlineCursor(LocalDateTime.parse("2022-05-03T00:00:00"), 3L))
+                                .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_next_page_for_one_professor() throws Exception {
+
+                // arrange
+
+                LocalDateTime from = LocalDateTime.parse("2022-05-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-05-08T00:00:00");
+                LocalDateTime after = LocalDateTime.parse("2022-05-03T00:00:00");
+
+                Recommendation last = Recommendation.builder().id(5L).professorEmail("phtcon@ucsb.edu")
+                                .dateNeeded(after).done(true).build();
+
+                when(recommendationRepository.findDueForProfessor(eq("phtcon@ucsb.edu"), eq(true), eq(after), eq(3L), eq(to), eq(PageRequest.of(0, 101))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(last)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/due?from=2022-05-01T00:00:00&to=2022-05-08T00:00:00"
+                                + "&done=true&professorEmail=phtcon@ucsb.edu&afterDateNeeded=2022-05-03T00:00:00&afterId=3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findDueForProfessor("phtcon@ucsb.edu", true, after, 3L, to, PageRequest.of(0, 101));
+                verify(recommendationRepository, times(0)).findDue(eq(true), any(), eq(3L), any(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for the per professor counts, /byProfessor
+
+        @Test
+        public void logged_out_users_cannot_get_counts_by_professor() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/byProfessor"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_their_own_counts_by_default() throws Exception {
+
+                // arrange
+
+                RecommendationInbox inbox = new RecommendationInbox("user@example.org", 3, 5, 1);
+                when(recommendationCountsService.getInbox(eq("user@example.org"))).thenReturn(inbox);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/byProfessor"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationCountsService, times(1)).getInbox("user@example.org");
+                verify(recommendationRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(inbox);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_counts_for_another_professor() throws Exception {
+
+                // arrange
+
+                RecommendationInbox inbox = new RecommendationInbox("phtcon@ucsb.edu", 0, 2, 0);
+                when(recommendationCountsService.getInbox(eq("phtcon@ucsb.edu"))).thenReturn(inbox);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/byProfessor?professorEmail=phtcon@ucsb.edu"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationCountsService, times(1)).getInbox("phtcon@ucsb.edu");
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(2, json.get("done"));
+                assertEquals(0, json.get("pending"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(Recommendation.class)).thenReturn("W/\"recommendations-7\"");
+                when(recommendationRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/Recommendation/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"recommendations-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(Recommendation.class)).thenReturn("W/\"recommendations-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/all").header("If-None-Match", "W/\"recommendations-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"recommendations-7\""))
+                                .andReturn();
+
+                verify(recommendationRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(Recommendation.class)).thenReturn("W/\"recommendations-7\"");
+
+                mockMvc.perform(get("/api/Recommendation?id=7").header("If-None-Match", "W/\"recommendations-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(recommendationRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(Recommendation.class)).thenReturn("W/\"recommendations-8\"");
+                when(recommendationRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/Recommendation/all").header("If-None-Match", "W/\"recommendations-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"recommendations-8\""));
+
+                verify(recommendationRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/Recommendation/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(recommendationRepository, times(1)).streamAll();
+                verify(recommendationRepository, times(0)).findAll();
+        }
+
+        // Tests for POST /api/Recommendation/post/batch
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/Recommendation/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_recommendations_and_they_are_saved_with_new_ids() throws Exception {
+                // arrange
+
+                Recommendation sent1 = Recommendation.builder()
+                                .id(7L)
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .done(false)
+                                .build();
+
+                Recommendation sent2 = Recommendation.builder()
+                                .id(8L)
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .professorEmail("richert@ucsb.edu")
+                                .explanation("PhD program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .done(true)
+                                .build();
+
+                Recommendation expected1 = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .done(false)
+                                .build();
+
+                Recommendation expected2 = Recommendation.builder()
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .professorEmail("richert@ucsb.edu")
+                                .explanation("PhD program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .done(true)
+                                .build();
+
+                List<Recommendation> expected = List.of(expected1, expected2);
+                when(recommendationRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/Recommendation/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                // ids sent by the client are ignored; the database assigns new ones
+                verify(recommendationRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(Recommendation.class);
+                verify(recommendationCountsService, times(1)).recommendationsAdded(expected);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                Recommendation valid = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .done(false)
+                                .build();
+
+                Recommendation invalid = Recommendation.builder()
+                                .requesterEmail("ldelplaya@ucsb.edu")
+                                .professorEmail(" ")
+                                .explanation("PhD program")
+                                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .dateNeeded(null)
+                                .done(true)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/Recommendation/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(0)).saveAll(any());
+                verify(recommendationCountsService, times(0)).recommendationsAdded(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "dateNeeded", "message", "must not be null"),
+                                Map.of("index", 1, "field", "professorEmail", "message", "must not be blank")), json.get("errors"));
+        }
 }
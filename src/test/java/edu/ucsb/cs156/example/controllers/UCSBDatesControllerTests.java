@@ -3,19 +3,27 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,6 +32,8 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,6 +52,9 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -189,6 +202,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDateRepository, times(1)).save(ucsbDate1);
+                verify(tableVersionService, times(1)).bumped(UCSBDate.class);
                 String expectedJson = mapper.writeValueAsString(ucsbDate1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -218,6 +232,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDateRepository, times(1)).findById(15L);
                 verify(ucsbDateRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(UCSBDate.class);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -279,6 +294,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDateRepository, times(1)).findById(67L);
                 verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(tableVersionService, times(1)).bumped(UCSBDate.class);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -315,4 +331,282 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_dates_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).name("firstDayOfClasses").quarterYYYYQ("20222").build();
+                UCSBDate second = UCSBDate.builder().id(5L).name("lastDayOfClasses").quarterYYYYQ("20222").build();
+                UCSBDate third = UCSBDate.builder().id(6L).name("firstDayOfFinals").quarterYYYYQ("20222").build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?after=3&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next(5L)
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_dates_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                UCSBDate first = UCSBDate.builder().id(4L).name("firstDayOfClasses").quarterYYYYQ("20222").build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(UCSBDate.class)).thenReturn("W/\"ucsbdates-7\"");
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdates/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdates-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDate.class)).thenReturn("W/\"ucsbdates-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", "W/\"ucsbdates-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"ucsbdates-7\""))
+                                .andReturn();
+
+                verify(ucsbDateRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDate.class)).thenReturn("W/\"ucsbdates-7\"");
+
+                mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "W/\"ucsbdates-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(ucsbDateRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(UCSBDate.class)).thenReturn("W/\"ucsbdates-8\"");
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdates/all").header("If-None-Match", "W/\"ucsbdates-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdates-8\""));
+
+                verify(ucsbDateRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/ucsbdates/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(ucsbDateRepository, times(1)).streamAll();
+                verify(ucsbDateRepository, times(0)).findAll();
+        }
+
+        // Tests for POST /api/ucsbdates/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_ucsbdates_and_they_are_saved_with_new_ids() throws Exception {
+                // arrange
+
+                UCSBDate sent1 = UCSBDate.builder()
+                                .id(7L)
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate sent2 = UCSBDate.builder()
+                                .id(8L)
+                                .quarterYYYYQ("20222")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate expected1 = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate expected2 = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                List<UCSBDate> expected = List.of(expected1, expected2);
+                when(ucsbDateRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                // ids sent by the client are ignored; the database assigns new ones
+                verify(ucsbDateRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(UCSBDate.class);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                UCSBDate valid = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                UCSBDate invalid = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name(" ")
+                                .localDateTime(null)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "localDateTime", "message", "must not be null"),
+                                Map.of("index", 1, "field", "name", "message", "must not be blank")), json.get("errors"));
+        }
+
+        // Tests for GET /api/ucsbdates/quarters
+
+        @Test
+        public void logged_out_users_cannot_get_a_quarter_range() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/quarters?startQuarterYYYYQ=20221&endQuarterYYYYQ=20224"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_ucsbdates_in_a_quarter_range() throws Exception {
+
+                // arrange
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                UCSBDate ucsbDate2 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20224")
+                                .localDateTime(LocalDateTime.parse("2022-09-22T00:00:00"))
+                                .build();
+
+                List<UCSBDate> expectedDates = List.of(ucsbDate1, ucsbDate2);
+                Sort byQuarterAndDate = Sort.by("quarterYYYYQ", "localDateTime");
+
+                when(ucsbDateRepository.findAllByQuarterYYYYQBetween(eq("20221"), eq("20224"), eq(byQuarterAndDate)))
+                                .thenReturn(expectedDates);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarters?startQuarterYYYYQ=20221&endQuarterYYYYQ=20224"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllByQuarterYYYYQBetween("20221", "20224", byQuarterAndDate);
+                String expectedJson = mapper.writeValueAsString(expectedDates);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
 }
@@ -3,25 +3,36 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.NearbyCommons;
+import edu.ucsb.cs156.example.services.DiningCommonsLocator;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,6 +51,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
+        @MockBean
+        DiningCommonsLocator diningCommonsLocator;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -197,6 +214,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommons.class);
+                verify(diningCommonsLocator, times(1)).invalidate();
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -217,7 +236,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .longitude(-119.867427)
                                 .build();
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.findUncachedByCode(eq("portola"))).thenReturn(Optional.of(portola));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +245,10 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
+                verify(ucsbDiningCommonsRepository, times(1)).findUncachedByCode("portola");
                 verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommons.class);
+                verify(diningCommonsLocator, times(1)).invalidate();
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +260,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.findUncachedByCode(eq("munger-hall"))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +269,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).findUncachedByCode("munger-hall");
+                verify(diningCommonsLocator, times(0)).invalidate();
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -280,7 +302,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.findUncachedByCode(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,8 +314,11 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+                verify(ucsbDiningCommonsRepository, times(1)).findUncachedByCode("carrillo");
+                verify(ucsbDiningCommonsRepository, times(0)).findById(any()); // never the shared cached instance
                 verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommons.class);
+                verify(diningCommonsLocator, times(1)).invalidate();
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -315,7 +340,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.findUncachedByCode(eq("munger-hall"))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +352,300 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).findUncachedByCode("munger-hall");
+                verify(diningCommonsLocator, times(0)).invalidate();
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_commons_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                UCSBDiningCommons third = UCSBDiningCommons.builder().code("portola").name("Portola").build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("carrillo"), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?after=carrillo&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc("carrillo", PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next("ortega")
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_commons_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra").build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc("", PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for the nearest commons, /nearest
+
+        @Test
+        public void logged_out_users_cannot_get_nearest() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_nearest_commons() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .latitude(34.410987).longitude(-119.84709).build();
+                UCSBDiningCommons dlg = UCSBDiningCommons.builder().code("de-la-guerra").name("De La Guerra")
+                                .latitude(34.409953).longitude(-119.85277).build();
+                List<NearbyCommons> nearest = List.of(new NearbyCommons(ortega, 120.5), new NearbyCommons(dlg, 480.25));
+
+                when(diningCommonsLocator.nearest(eq(34.411), eq(-119.846), eq(2))).thenReturn(nearest);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.411&lon=-119.846&k=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(diningCommonsLocator, times(1)).nearest(34.411, -119.846, 2);
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(nearest);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_defaults_to_three_commons_and_caps_k() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.411&lon=-119.846"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.411&lon=-119.846&k=5000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(diningCommonsLocator, times(1)).nearest(34.411, -119.846, 3);
+                verify(diningCommonsLocator, times(1)).nearest(34.411, -119.846, 1000);
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommons.class)).thenReturn("W/\"ucsbdiningcommons-7\"");
+                when(ucsbDiningCommonsRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdiningcommons/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommons-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommons.class)).thenReturn("W/\"ucsbdiningcommons-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", "W/\"ucsbdiningcommons-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommons-7\""))
+                                .andReturn();
+
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommons.class)).thenReturn("W/\"ucsbdiningcommons-7\"");
+
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega").header("If-None-Match", "W/\"ucsbdiningcommons-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(ucsbDiningCommonsRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommons.class)).thenReturn("W/\"ucsbdiningcommons-8\"");
+                when(ucsbDiningCommonsRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/ucsbdiningcommons/all").header("If-None-Match", "W/\"ucsbdiningcommons-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommons-8\""));
+
+                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/ucsbdiningcommons/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(ucsbDiningCommonsRepository, times(1)).streamAll();
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+        }
+
+        // Tests for POST /api/ucsbdiningcommons/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_commons_and_they_are_saved() throws Exception {
+                // arrange
+
+                UCSBDiningCommons expected1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons expected2 = UCSBDiningCommons.builder()
+                                .code("de-la-guerra")
+                                .name("De La Guerra")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409811)
+                                .longitude(-119.845026)
+                                .build();
+
+                List<UCSBDiningCommons> expected = List.of(expected1, expected2);
+                when(ucsbDiningCommonsRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(expected1, expected2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommons.class);
+                verify(diningCommonsLocator, times(1)).invalidate();
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                UCSBDiningCommons valid = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Carrillo")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.409953)
+                                .longitude(-119.85277)
+                                .build();
+
+                UCSBDiningCommons invalid = UCSBDiningCommons.builder()
+                                .code(" ")
+                                .name("De La Guerra")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(null)
+                                .longitude(-119.845026)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(0)).saveAll(any());
+                verify(diningCommonsLocator, times(0)).invalidate();
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "code", "message", "must not be blank"),
+                                Map.of("index", 1, "field", "latitude", "message", "must not be null")), json.get("errors"));
+        }
 }
@@ -3,25 +3,35 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.MenuItemCursor;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,6 +50,9 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -183,6 +196,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 // assert
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(ortega);
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommonsMenuItem.class);
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -210,6 +224,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 // assert
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(123L);
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommonsMenuItem.class);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 123 deleted", json.get("message"));
@@ -272,6 +287,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 // assert
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(123L);
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(portolaEdited); // should be saved with updated info
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommonsMenuItem.class);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -307,4 +323,306 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 assertEquals("UCSBDiningCommonsMenuItem with id 123 not found", json.get("message"));
 
         }
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_menu_items_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(4L).diningCommonsCode("ortega").name("Baked Pesto Pasta with Chicken").station("Entree Specials").build();
+                UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().id(5L).diningCommonsCode("ortega").name("Tofu Banh Mi Sandwich (v)").station("Entree Specials").build();
+                UCSBDiningCommonsMenuItem third = UCSBDiningCommonsMenuItem.builder().id(6L).diningCommonsCode("portola").name("Chicken Caesar Salad").station("Entrees").build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(3L), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?after=3&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(3L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next(5L)
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_menu_items_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(4L).diningCommonsCode("ortega").name("Baked Pesto Pasta with Chicken").station("Entree Specials").build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for the per commons menu listing, /byCommons
+
+        @Test
+        public void logged_out_users_cannot_get_menu_items_by_commons() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/byCommons?code=ortega"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_first_page_of_a_commons_menu() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem bagel = UCSBDiningCommonsMenuItem.builder().id(4L)
+                                .diningCommonsCode("ortega").station("Bakery").name("Bagel").build();
+                UCSBDiningCommonsMenuItem burger = UCSBDiningCommonsMenuItem.builder().id(1L)
+                                .diningCommonsCode("ortega").station("Grill").name("Burger").build();
+                UCSBDiningCommonsMenuItem fries = UCSBDiningCommonsMenuItem.builder().id(3L)
+                                .diningCommonsCode("ortega").station("Grill").name("Fries").build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(eq("ortega"), eq(""), eq(""), eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(bagel, burger, fries)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/byCommons?code=ortega&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllByDiningCommonsCode("ortega", "", "", 0L, PageRequest.of(0, 3));
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                                .content(Arrays.asList(bagel, burger))
+                                .next(new MenuItemCursor("Grill", "Burger", 1L))
+                                .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_next_page_of_one_station() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem fries = UCSBDiningCommonsMenuItem.builder().id(3L)
+                                .diningCommonsCode("ortega").station("Grill").name("Fries").build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCodeAndStation(eq("ortega"), eq("Grill"), eq("Burger"), eq(1L), eq(PageRequest.of(0, 101))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(fries)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/byCommons?code=ortega&station=Grill"
+                                + "&afterStation=Grill&afterName=Burger&afterId=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllByDiningCommonsCodeAndStation("ortega", "Grill", "Burger", 1L, PageRequest.of(0, 101));
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAllByDiningCommonsCode(any(), any(), any(), any(Long.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommonsMenuItem.class)).thenReturn("W/\"ucsbdiningcommonsmenuitems-7\"");
+                when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommonsmenuitems-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommonsMenuItem.class)).thenReturn("W/\"ucsbdiningcommonsmenuitems-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all").header("If-None-Match", "W/\"ucsbdiningcommonsmenuitems-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommonsmenuitems-7\""))
+                                .andReturn();
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommonsMenuItem.class)).thenReturn("W/\"ucsbdiningcommonsmenuitems-7\"");
+
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem?id=7").header("If-None-Match", "W/\"ucsbdiningcommonsmenuitems-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(UCSBDiningCommonsMenuItem.class)).thenReturn("W/\"ucsbdiningcommonsmenuitems-8\"");
+                when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all").header("If-None-Match", "W/\"ucsbdiningcommonsmenuitems-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsbdiningcommonsmenuitems-8\""));
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAll();
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAll();
+        }
+
+        // Tests for POST /api/UCSBDiningCommonsMenuItem/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/UCSBDiningCommonsMenuItem/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_menu_items_and_they_are_saved_with_new_ids() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem sent1 = UCSBDiningCommonsMenuItem.builder()
+                                .id(7L)
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                UCSBDiningCommonsMenuItem sent2 = UCSBDiningCommonsMenuItem.builder()
+                                .id(8L)
+                                .diningCommonsCode("ortega")
+                                .name("Tofu Banh Mi Sandwich (v)")
+                                .station("Entree Specials")
+                                .build();
+
+                UCSBDiningCommonsMenuItem expected1 = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                UCSBDiningCommonsMenuItem expected2 = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Tofu Banh Mi Sandwich (v)")
+                                .station("Entree Specials")
+                                .build();
+
+                List<UCSBDiningCommonsMenuItem> expected = List.of(expected1, expected2);
+                when(ucsbDiningCommonsMenuItemRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/UCSBDiningCommonsMenuItem/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(sent1, sent2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                // ids sent by the client are ignored; the database assigns new ones
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(UCSBDiningCommonsMenuItem.class);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem valid = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                UCSBDiningCommonsMenuItem invalid = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode(" ")
+                                .name("Tofu Banh Mi Sandwich (v)")
+                                .station(null)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/UCSBDiningCommonsMenuItem/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "diningCommonsCode", "message", "must not be blank"),
+                                Map.of("index", 1, "field", "station", "message", "must not be null")), json.get("errors"));
+        }
 }
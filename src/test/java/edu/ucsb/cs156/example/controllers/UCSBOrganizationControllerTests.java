@@ -3,25 +3,34 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.services.NdjsonStreamingService;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,6 +49,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        NdjsonStreamingService ndjsonStreamingService;
+
         // Authorization tests for /api/UCSBOrganization/admin/all
 
         @Test
@@ -186,6 +198,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbOrganizationRepository, times(1)).save(org);
+                verify(tableVersionService, times(1)).bumped(UCSBOrganization.class);
                 String expectedJson = mapper.writeValueAsString(org);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -203,7 +216,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .inactive(true)
                                 .build();
 
-                when(ucsbOrganizationRepository.findById(eq("SKY"))).thenReturn(Optional.of(skyOrg));
+                when(ucsbOrganizationRepository.findUncachedByOrgCode(eq("SKY"))).thenReturn(Optional.of(skyOrg));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -212,8 +225,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("SKY");
+                verify(ucsbOrganizationRepository, times(1)).findUncachedByOrgCode("SKY");
                 verify(ucsbOrganizationRepository, times(1)).delete(any());
+                verify(tableVersionService, times(1)).bumped(UCSBOrganization.class);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id SKY deleted", json.get("message"));
@@ -225,7 +239,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationRepository.findById(eq("OSLI"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.findUncachedByOrgCode(eq("OSLI"))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -234,7 +248,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("OSLI");
+                verify(ucsbOrganizationRepository, times(1)).findUncachedByOrgCode("OSLI");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id OSLI not found", json.get("message"));
         }
@@ -260,7 +274,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(skyEdited);
 
-                when(ucsbOrganizationRepository.findById(eq("SKY"))).thenReturn(Optional.of(skyOrig));
+                when(ucsbOrganizationRepository.findUncachedByOrgCode(eq("SKY"))).thenReturn(Optional.of(skyOrig));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -272,8 +286,10 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("SKY");
+                verify(ucsbOrganizationRepository, times(1)).findUncachedByOrgCode("SKY");
+                verify(ucsbOrganizationRepository, times(0)).findById(any()); // never the shared cached instance
                 verify(ucsbOrganizationRepository, times(1)).save(skyEdited); // should be saved with updated info
+                verify(tableVersionService, times(1)).bumped(UCSBOrganization.class);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -292,7 +308,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(studentLife);
 
-                when(ucsbOrganizationRepository.findById(eq("OSLI"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.findUncachedByOrgCode(eq("OSLI"))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -304,9 +320,234 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("OSLI");
+                verify(ucsbOrganizationRepository, times(1)).findUncachedByOrgCode("OSLI");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id OSLI not found", json.get("message"));
 
         }
+
+        // Tests for the keyset paginated listing, /all?limit=
+
+        @Test
+        public void logged_out_users_cannot_get_a_page() throws Exception {
+                mockMvc.perform(get("/api/UCSBOrganization/all?limit=2"))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_organizations_with_a_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBOrganization first = UCSBOrganization.builder().orgCode("KRC").orgTranslationShort("KOREAN RADIO CL").build();
+                UCSBOrganization second = UCSBOrganization.builder().orgCode("OSLI").orgTranslationShort("STUDENT LIFE").build();
+                UCSBOrganization third = UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq("carrillo"), eq(PageRequest.of(0, 3))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first, second, third)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all?after=carrillo&limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc("carrillo", PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(KeysetPage.builder()
+                        .content(Arrays.asList(first, second))
+                        .next("OSLI")
+                        .build());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void last_page_of_organizations_has_no_next_cursor_and_limit_is_capped() throws Exception {
+
+                // arrange
+
+                UCSBOrganization first = UCSBOrganization.builder().orgCode("KRC").orgTranslationShort("KOREAN RADIO CL").build();
+
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, 1001))))
+                        .thenReturn(new ArrayList<>(Arrays.asList(first)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all?limit=5000"))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc("", PageRequest.of(0, 1001));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        // Tests for conditional GET with the table's ETag
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_table_etag_with_all() throws Exception {
+                when(tableVersionService.etag(UCSBOrganization.class)).thenReturn("W/\"ucsborganizations-7\"");
+                when(ucsbOrganizationRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/UCSBOrganization/all"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsborganizations-7\""))
+                                .andExpect(header().string("Cache-Control", "no-cache"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBOrganization.class)).thenReturn("W/\"ucsborganizations-7\"");
+
+                MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all").header("If-None-Match", "W/\"ucsborganizations-7\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "W/\"ucsborganizations-7\""))
+                                .andReturn();
+
+                verify(ucsbOrganizationRepository, times(0)).findAll();
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_while_the_etag_matches() throws Exception {
+                when(tableVersionService.etag(UCSBOrganization.class)).thenReturn("W/\"ucsborganizations-7\"");
+
+                mockMvc.perform(get("/api/UCSBOrganization?id=ZPR").header("If-None-Match", "W/\"ucsborganizations-7\""))
+                                .andExpect(status().isNotModified());
+
+                verify(ucsbOrganizationRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_is_sent_again_once_the_table_changes() throws Exception {
+                when(tableVersionService.etag(UCSBOrganization.class)).thenReturn("W/\"ucsborganizations-8\"");
+                when(ucsbOrganizationRepository.findAll()).thenReturn(new ArrayList<>());
+
+                mockMvc.perform(get("/api/UCSBOrganization/all").header("If-None-Match", "W/\"ucsborganizations-7\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "W/\"ucsborganizations-8\""));
+
+                verify(ucsbOrganizationRepository, times(1)).findAll();
+        }
+
+        // Tests for streaming /all as newline delimited JSON
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_as_ndjson() throws Exception {
+
+                // arrange
+
+                CountDownLatch requestReturned = new CountDownLatch(1);
+                StreamingResponseBody body = writeAfter(requestReturned, "{}\n");
+                when(ndjsonStreamingService.stream(any())).thenReturn(ResponseEntity.ok().body(body));
+
+                // act
+                MvcResult result = mockMvc.perform(get("/api/UCSBOrganization/all").accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted()).andReturn();
+                requestReturned.countDown();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(content().string("{}\n"));
+
+                // assert
+
+                ArgumentCaptor<Supplier> query = ArgumentCaptor.forClass(Supplier.class);
+                verify(ndjsonStreamingService, times(1)).stream(query.capture());
+                query.getValue().get();
+                verify(ucsbOrganizationRepository, times(1)).streamAll();
+                verify(ucsbOrganizationRepository, times(0)).findAll();
+        }
+
+        // Tests for POST /api/UCSBOrganization/post/batch
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_a_batch() throws Exception {
+                mockMvc.perform(post("/api/UCSBOrganization/post/batch"))
+                                .andExpect(status().is(403)); // only admins can post
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_a_batch_of_organizations_and_they_are_saved() throws Exception {
+                // arrange
+
+                UCSBOrganization expected1 = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(false)
+                                .build();
+
+                UCSBOrganization expected2 = UCSBOrganization.builder()
+                                .orgCode("SKY")
+                                .orgTranslationShort("SKYDIVING CLUB")
+                                .orgTranslation("SKYDIVING CLUB AT UCSB")
+                                .inactive(false)
+                                .build();
+
+                List<UCSBOrganization> expected = List.of(expected1, expected2);
+                when(ucsbOrganizationRepository.saveAll(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/UCSBOrganization/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(expected1, expected2)))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).saveAll(expected);
+                verify(tableVersionService, times(1)).bumped(UCSBOrganization.class);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_gets_per_item_errors_and_nothing_is_saved_when_a_batch_is_invalid() throws Exception {
+                // arrange
+
+                UCSBOrganization valid = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(false)
+                                .build();
+
+                UCSBOrganization invalid = UCSBOrganization.builder()
+                                .orgCode(" ")
+                                .orgTranslationShort("SKYDIVING CLUB")
+                                .orgTranslation(null)
+                                .inactive(false)
+                                .build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/UCSBOrganization/post/batch")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(List.of(valid, invalid)))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(0)).saveAll(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BatchValidationException", json.get("type"));
+                assertEquals("1 of 2 items in the batch are invalid", json.get("message"));
+                assertEquals(List.of(
+                                Map.of("index", 1, "field", "orgCode", "message", "must not be blank"),
+                                Map.of("index", 1, "field", "orgTranslation", "message", "must not be null")), json.get("errors"));
+        }
 }
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@Import(AdminStatusCache.class)
+@TestPropertySource(properties = { "app.admin.emails=phtcon@ucsb.edu" })
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AdminStatusCacheTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  AdminStatusCache adminStatusCache;
+
+  @Test
+  void test_admin_emails_are_admins_without_a_database_lookup() {
+    assertTrue(adminStatusCache.isAdminEmail("phtcon@ucsb.edu"));
+    assertTrue(adminStatusCache.isAdmin("phtcon@ucsb.edu"));
+    verify(userRepository, times(0)).findByEmail(any());
+  }
+
+  @Test
+  void test_database_admin_flag_is_looked_up_once() {
+    // arrange
+    User ldelplaya = User.builder().email("ldelplaya@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail("ldelplaya@ucsb.edu")).thenReturn(Optional.of(ldelplaya));
+
+    // act and assert
+    assertFalse(adminStatusCache.isAdminEmail("ldelplaya@ucsb.edu"));
+    assertTrue(adminStatusCache.isAdmin("ldelplaya@ucsb.edu"));
+    assertTrue(adminStatusCache.isAdmin("ldelplaya@ucsb.edu"));
+    verify(userRepository, times(1)).findByEmail("ldelplaya@ucsb.edu");
+  }
+
+  @Test
+  void test_unknown_users_are_not_admins_and_evict_forces_a_new_lookup() {
+    // arrange
+    when(userRepository.findByEmail("pdg@ucsb.edu")).thenReturn(Optional.empty());
+
+    // act and assert
+    assertFalse(adminStatusCache.isAdmin("pdg@ucsb.edu"));
+    adminStatusCache.evict("pdg@ucsb.edu");
+    assertFalse(adminStatusCache.isAdmin("pdg@ucsb.edu"));
+    verify(userRepository, times(2)).findByEmail("pdg@ucsb.edu");
+  }
+
+  @Test
+  void test_hits_and_misses_are_published_as_cache_metrics() {
+    // arrange
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    adminStatusCache.bindTo(registry);
+    when(userRepository.findByEmail("pdg@ucsb.edu")).thenReturn(Optional.empty());
+
+    // act
+    adminStatusCache.isAdmin("pdg@ucsb.edu");
+    adminStatusCache.isAdmin("pdg@ucsb.edu");
+    adminStatusCache.isAdmin("pdg@ucsb.edu");
+
+    // assert
+    assertEquals(2.0, registry.get("cache.gets").tag("cache", AdminStatusCache.CACHE_NAME).tag("result", "hit").functionCounter().count());
+    assertEquals(1.0, registry.get("cache.gets").tag("cache", AdminStatusCache.CACHE_NAME).tag("result", "miss").functionCounter().count());
+  }
+}
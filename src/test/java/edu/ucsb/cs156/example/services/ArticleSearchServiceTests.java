@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.ArticleTerm;
+import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.repositories.ArticleTermRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(ArticleSearchService.class)
+class ArticleSearchServiceTests {
+
+  @MockBean
+  ArticleTermRepository articleTermRepository;
+
+  @MockBean
+  ArticleRepository articleRepository;
+
+  @MockBean
+  EntityManager entityManager;
+
+  @Autowired
+  ArticleSearchService articleSearchService;
+
+  private static Article article(long id, String title, String explanation) {
+    return Article.builder().id(id).title(title).explanation(explanation)
+        .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+  }
+
+  @Test
+  void test_terms_are_lowercased_runs_of_letters_and_digits() {
+    assertEquals(List.of("spring", "boot", "2", "6", "café", "o", "reilly"),
+        ArticleSearchService.terms("Spring-Boot 2.6: Café O'Reilly!"));
+    assertEquals(List.of(), ArticleSearchService.terms(null));
+    assertEquals(List.of(), ArticleSearchService.terms(" -- "));
+  }
+
+  @Test
+  void test_long_terms_are_truncated() {
+    assertEquals(List.of("x".repeat(ArticleSearchService.MAX_TERM_LENGTH)),
+        ArticleSearchService.terms("x".repeat(100)));
+  }
+
+  @Test
+  void test_articleAdded_indexes_each_word_once_with_title_words_weighing_more() {
+    articleSearchService.articleAdded(article(7L, "Spring testing", "Testing Spring controllers with MockMvc; testing is fun"));
+    verify(entityManager, times(1)).persist(new ArticleTerm("spring", 7L, 4));
+    verify(entityManager, times(1)).persist(new ArticleTerm("testing", 7L, 5));
+    verify(entityManager, times(1)).persist(new ArticleTerm("controllers", 7L, 1));
+    verify(entityManager, times(7)).persist(any());
+    verify(articleTermRepository, times(0)).deleteByArticleId(anyLong());
+  }
+
+  @Test
+  void test_articlesAdded_indexes_every_article() {
+    articleSearchService.articlesAdded(List.of(article(1L, "Spring", null), article(2L, "JUnit", "")));
+    verify(entityManager, times(1)).persist(new ArticleTerm("spring", 1L, 3));
+    verify(entityManager, times(1)).persist(new ArticleTerm("junit", 2L, 3));
+    verify(entityManager, times(2)).persist(any());
+  }
+
+  @Test
+  void test_articleChanged_replaces_the_terms() {
+    articleSearchService.articleChanged(article(7L, "React", null));
+    verify(articleTermRepository, times(1)).deleteByArticleId(7L);
+    verify(entityManager, times(1)).persist(new ArticleTerm("react", 7L, 3));
+  }
+
+  @Test
+  void test_articleRemoved_deletes_the_terms() {
+    articleSearchService.articleRemoved(article(7L, "React", null));
+    verify(articleTermRepository, times(1)).deleteByArticleId(7L);
+    verify(entityManager, times(0)).persist(any());
+  }
+
+  @Test
+  void test_rebuild_reindexes_every_article() {
+    when(articleRepository.findAll()).thenReturn(List.of(article(1L, "Spring", null), article(2L, "JUnit", null)));
+    assertEquals(2, articleSearchService.rebuild());
+    verify(articleTermRepository, times(1)).deleteAllTerms();
+    verify(entityManager, times(2)).persist(any());
+  }
+
+  @Test
+  void test_search_returns_articles_in_rank_order() {
+    PageRequest page = PageRequest.of(0, 2);
+    when(articleTermRepository.findArticleIdsByTerms(eq(List.of("spring", "testing")), eq(page)))
+        .thenReturn(new SliceImpl<>(List.of(9L, 4L), page, true));
+    Article four = article(4L, "Spring", null);
+    Article nine = article(9L, "Spring testing", null);
+    when(articleRepository.findAllById(List.of(9L, 4L))).thenReturn(List.of(four, nine));
+
+    Slice<Article> results = articleSearchService.search("Spring TESTING spring", page);
+
+    assertEquals(List.of(nine, four), results.getContent());
+    assertTrue(results.hasNext());
+    assertEquals(page, results.getPageable());
+  }
+
+  @Test
+  void test_search_skips_articles_deleted_since_the_ids_were_found() {
+    PageRequest page = PageRequest.of(0, 20);
+    when(articleTermRepository.findArticleIdsByTerms(eq(List.of("spring")), eq(page)))
+        .thenReturn(new SliceImpl<>(List.of(9L, 4L), page, false));
+    Article four = article(4L, "Spring", null);
+    when(articleRepository.findAllById(List.of(9L, 4L))).thenReturn(List.of(four));
+
+    assertEquals(List.of(four), articleSearchService.search("spring", page).getContent());
+  }
+
+  @Test
+  void test_search_with_no_words_finds_nothing_without_a_query() {
+    Slice<Article> results = articleSearchService.search(" ?! ", PageRequest.of(0, 20));
+    assertEquals(List.of(), results.getContent());
+    assertFalse(results.hasNext());
+    verify(articleTermRepository, times(0)).findArticleIdsByTerms(any(), any());
+  }
+}
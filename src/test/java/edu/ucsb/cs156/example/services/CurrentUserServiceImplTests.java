@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(CurrentUserServiceImpl.class)
+class CurrentUserServiceImplTests {
+
+  private static final String EMAIL = "ldelplaya@ucsb.edu";
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @MockBean
+  AdminStatusCache adminStatusCache;
+
+  @Autowired
+  CurrentUserServiceImpl currentUserService;
+
+  private MockHttpServletRequest request;
+
+  @BeforeEach
+  void logIn() {
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        List.of(new SimpleGrantedAuthority("ROLE_USER")),
+        Map.of("sub", "1234", "email", EMAIL, "email_verified", true),
+        "sub");
+    SecurityContextHolder.getContext().setAuthentication(
+        new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+    request = new MockHttpServletRequest();
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @AfterEach
+  void logOut() {
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private static User ldelplaya(boolean admin) {
+    return User.builder().id(1L).email(EMAIL).admin(admin).build();
+  }
+
+  @Test
+  void test_the_user_is_looked_up_once_per_session() throws IOException {
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(ldelplaya(false)));
+
+    assertFalse(currentUserService.getUser().getAdmin());
+    assertFalse(currentUserService.getUser().getAdmin());
+    verify(userRepository, times(1)).findByEmail(EMAIL);
+
+    // sessions may be persisted or replicated
+    Object cached = request.getSession().getAttribute(CurrentUserServiceImpl.CACHED_USER_ATTRIBUTE);
+    assertNotNull(cached);
+    new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(cached);
+  }
+
+  @Test
+  void test_the_cached_user_is_dropped_when_they_are_made_an_admin() {
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(ldelplaya(false)), Optional.of(ldelplaya(true)));
+    assertFalse(currentUserService.getUser().getAdmin());
+
+    when(adminStatusCache.isAdmin(EMAIL)).thenReturn(true);
+
+    assertTrue(currentUserService.getUser().getAdmin());
+    verify(userRepository, times(2)).findByEmail(EMAIL);
+    verify(userRepository, times(0)).save(any());
+  }
+
+  @Test
+  void test_the_cached_user_is_dropped_when_they_are_no_longer_an_admin() {
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(ldelplaya(true)), Optional.of(ldelplaya(false)));
+    when(adminStatusCache.isAdmin(EMAIL)).thenReturn(true);
+    assertTrue(currentUserService.getUser().getAdmin());
+
+    when(adminStatusCache.isAdmin(EMAIL)).thenReturn(false);
+
+    assertFalse(currentUserService.getUser().getAdmin());
+    assertFalse(currentUserService.getUser().getAdmin());
+    verify(userRepository, times(2)).findByEmail(EMAIL);
+  }
+
+  @Test
+  void test_a_user_added_to_the_admin_emails_is_promoted() {
+    when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(ldelplaya(false)));
+    assertFalse(currentUserService.getUser().getAdmin());
+
+    when(adminStatusCache.isAdminEmail(EMAIL)).thenReturn(true);
+    when(adminStatusCache.isAdmin(EMAIL)).thenReturn(true);
+
+    assertTrue(currentUserService.getUser().getAdmin());
+    verify(userRepository, times(1)).save(any());
+    verify(adminStatusCache, times(1)).evict(EMAIL);
+  }
+}
@@ -0,0 +1,162 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.NearbyCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(DiningCommonsLocator.class)
+class DiningCommonsLocatorTests {
+
+  private static final UCSBDiningCommons CARRILLO = commons("carrillo", 34.409811, -119.85306);
+  private static final UCSBDiningCommons DLG = commons("de-la-guerra", 34.409953, -119.85277);
+  private static final UCSBDiningCommons ORTEGA = commons("ortega", 34.410987, -119.84709);
+  private static final UCSBDiningCommons PORTOLA = commons("portola", 34.417723, -119.867427);
+
+  @MockBean
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  DiningCommonsLocator diningCommonsLocator;
+
+  @BeforeEach
+  void startFromAnEmptyTree() {
+    diningCommonsLocator.maxAgeSeconds = 60;
+    diningCommonsLocator.invalidate();
+  }
+
+  private static UCSBDiningCommons commons(String code, Double latitude, Double longitude) {
+    return UCSBDiningCommons.builder().code(code).name(code).latitude(latitude).longitude(longitude).build();
+  }
+
+  private static List<String> codes(List<NearbyCommons> nearest) {
+    return nearest.stream().map(n -> n.getCommons().getCode()).collect(Collectors.toList());
+  }
+
+  @Test
+  void test_nearest_returns_the_k_closest_commons_nearest_first_with_distances() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(PORTOLA, ORTEGA, CARRILLO, DLG));
+
+    // the Student Resource Building
+    List<NearbyCommons> nearest = diningCommonsLocator.nearest(34.41243, -119.84815, 2);
+
+    assertEquals(List.of("ortega", "de-la-guerra"), codes(nearest));
+    assertEquals(187.6, nearest.get(0).getDistanceMeters(), 0.1);
+    assertEquals(505.5, nearest.get(1).getDistanceMeters(), 0.1);
+  }
+
+  @Test
+  void test_nearest_returns_every_commons_when_k_is_larger_and_skips_ones_without_a_location() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(PORTOLA, commons("munger-hall", null, null), ORTEGA));
+    assertEquals(List.of("portola", "ortega"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 10)));
+  }
+
+  @Test
+  void test_nearest_finds_nothing_when_there_are_no_commons() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of());
+    assertEquals(List.of(), diningCommonsLocator.nearest(34.41, -119.85, 3));
+  }
+
+  @Test
+  void test_nearest_breaks_ties_by_code() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(
+        commons("b", 1.0, 0.0), commons("c", -1.0, 0.0), commons("a", 0.0, 1.0), commons("d", 0.0, -1.0)));
+    assertEquals(List.of("a", "b", "c"), codes(diningCommonsLocator.nearest(0, 0, 3)));
+  }
+
+  @Test
+  void test_nearest_measures_across_the_date_line() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(
+        commons("east", 0.0, 179.5), commons("far", 0.0, 170.0), commons("west", 0.0, -179.9)));
+    List<NearbyCommons> nearest = diningCommonsLocator.nearest(0, -179.8, 2);
+    assertEquals(List.of("west", "east"), codes(nearest));
+    assertEquals(DiningCommonsLocator.EARTH_RADIUS_METERS * Math.toRadians(0.1), nearest.get(0).getDistanceMeters(), 0.01);
+  }
+
+  @Test
+  void test_nearest_agrees_with_a_brute_force_search() {
+    Random random = new Random(156);
+    List<UCSBDiningCommons> all = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      all.add(commons("c" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    }
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(all);
+
+    for (int query = 0; query < 50; query++) {
+      double lat = random.nextDouble() * 180 - 90;
+      double lon = random.nextDouble() * 360 - 180;
+      double[] target = DiningCommonsLocator.toPoint(lat, lon);
+      List<String> expected = all.stream()
+          .sorted(Comparator.comparingDouble((UCSBDiningCommons c) -> {
+            double[] p = DiningCommonsLocator.toPoint(c.getLatitude(), c.getLongitude());
+            return Math.pow(p[0] - target[0], 2) + Math.pow(p[1] - target[1], 2) + Math.pow(p[2] - target[2], 2);
+          }).thenComparing(UCSBDiningCommons::getCode))
+          .limit(7)
+          .map(UCSBDiningCommons::getCode)
+          .collect(Collectors.toList());
+      assertEquals(expected, codes(diningCommonsLocator.nearest(lat, lon, 7)));
+    }
+    verify(ucsbDiningCommonsRepository, times(1)).findAll();
+  }
+
+  @Test
+  void test_the_tree_is_reused_until_invalidated() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ORTEGA), List.of(ORTEGA, PORTOLA));
+
+    assertEquals(List.of("ortega"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+    assertEquals(List.of("ortega"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+    verify(ucsbDiningCommonsRepository, times(1)).findAll();
+
+    diningCommonsLocator.invalidate();
+    assertEquals(List.of("portola"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+    verify(ucsbDiningCommonsRepository, times(2)).findAll();
+  }
+
+  @Test
+  void test_a_write_in_a_transaction_invalidates_the_tree_again_when_it_commits() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ORTEGA), List.of(PORTOLA));
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      diningCommonsLocator.invalidate();
+      // rebuilt before the write commits
+      assertEquals(List.of("ortega"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(List.of("portola"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+    verify(ucsbDiningCommonsRepository, times(2)).findAll();
+  }
+
+  @Test
+  void test_the_tree_is_rebuilt_once_it_is_older_than_the_max_age() {
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ORTEGA), List.of(PORTOLA));
+    diningCommonsLocator.maxAgeSeconds = 0;
+
+    assertEquals(List.of("ortega"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+    assertEquals(List.of("portola"), codes(diningCommonsLocator.nearest(34.4177, -119.8674, 1)));
+  }
+}
@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.HelpRequestChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@Import({ HelpRequestEventService.class, JacksonAutoConfiguration.class })
+class HelpRequestEventServiceTests {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  HelpRequestEventService helpRequestEventService;
+
+  private final List<SseEmitter> added = new CopyOnWriteArrayList<>();
+
+  /** Records the text of each event instead of writing it to a response */
+  static class RecordingEmitter extends SseEmitter {
+    final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      StringBuilder text = new StringBuilder();
+      builder.build().forEach(part -> text.append(part.getData()));
+      sent.add(text.toString());
+    }
+  }
+
+  /** A subscriber whose connection has gone away */
+  static class BrokenEmitter extends SseEmitter {
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      throw new IOException("Broken pipe");
+    }
+  }
+
+  private <T extends SseEmitter> T subscribe(T emitter) {
+    helpRequestEventService.add(emitter);
+    added.add(emitter);
+    return emitter;
+  }
+
+  private void waitForFanOut() throws Exception {
+    helpRequestEventService.fanOut.submit(() -> { }).get();
+  }
+
+  @AfterEach
+  void unsubscribe() throws Exception {
+    waitForFanOut();
+    added.forEach(emitter -> helpRequestEventService.remove(emitter));
+  }
+
+  private static HelpRequestChange change(HelpRequestChange.Type type) {
+    return new HelpRequestChange(type, HelpRequest.builder()
+        .id(1L)
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId("s22-5pm-3")
+        .tableOrBreakoutRoom("7")
+        .requestTime(LocalDateTime.parse("2022-04-20T17:35"))
+        .explanation("Need help with Swagger-ui")
+        .solved(false)
+        .build());
+  }
+
+  @Test
+  void test_subscribe_adds_a_subscriber() {
+    // act
+    SseEmitter emitter = helpRequestEventService.subscribe();
+    added.add(emitter);
+
+    // assert
+    assertEquals(HelpRequestEventService.STREAM_TIMEOUT_MILLIS, emitter.getTimeout());
+    assertEquals(1, helpRequestEventService.getSubscriberCount());
+  }
+
+  @Test
+  void test_a_published_change_is_sent_to_every_subscriber_as_json() throws Exception {
+    // arrange
+    RecordingEmitter first = subscribe(new RecordingEmitter());
+    RecordingEmitter second = subscribe(new RecordingEmitter());
+    HelpRequestChange change = change(HelpRequestChange.Type.UPDATED);
+
+    // act
+    eventPublisher.publishEvent(change);
+    waitForFanOut();
+
+    // assert
+    String expected = "data:" + mapper.writeValueAsString(change) + "\n\n";
+    assertEquals(List.of(expected), first.sent);
+    assertEquals(List.of(expected), second.sent);
+  }
+
+  @Test
+  void test_a_subscriber_that_has_gone_away_is_dropped() throws Exception {
+    // arrange
+    subscribe(new BrokenEmitter());
+    RecordingEmitter working = subscribe(new RecordingEmitter());
+
+    // act
+    helpRequestEventService.onChange(change(HelpRequestChange.Type.CREATED));
+    waitForFanOut();
+
+    // assert
+    assertEquals(1, helpRequestEventService.getSubscriberCount());
+    assertEquals(1, working.sent.size());
+  }
+
+  @Test
+  void test_subscriber_count_is_published_as_a_gauge() {
+    // arrange
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    helpRequestEventService.bindTo(registry);
+    subscribe(new RecordingEmitter());
+
+    // act and assert
+    assertEquals(1.0, registry.get("helprequest.stream.subscribers").gauge().value());
+  }
+}
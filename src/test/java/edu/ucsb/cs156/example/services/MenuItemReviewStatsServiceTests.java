@@ -0,0 +1,253 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.MenuItemReviewDailyRollup;
+import edu.ucsb.cs156.example.entities.MenuItemReviewStats;
+import edu.ucsb.cs156.example.models.ReviewRollup;
+import edu.ucsb.cs156.example.models.RollupBucket;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewDailyRollupRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewStatsRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(MenuItemReviewStatsService.class)
+class MenuItemReviewStatsServiceTests {
+
+  private static final LocalDate JAN_3 = LocalDate.parse("2022-01-03");
+
+  @MockBean
+  MenuItemReviewStatsRepository menuItemReviewStatsRepository;
+
+  @MockBean
+  MenuItemReviewDailyRollupRepository menuItemReviewDailyRollupRepository;
+
+  @MockBean
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  MenuItemReviewStatsService menuItemReviewStatsService;
+
+  private void rowsExist() {
+    when(menuItemReviewStatsRepository.addToTotals(anyInt(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+        anyLong(), anyLong())).thenReturn(1);
+    when(menuItemReviewDailyRollupRepository.addToDay(any(), anyLong(), anyLong())).thenReturn(1);
+  }
+
+  private static MenuItemReview review(int stars, String dateReviewed) {
+    return MenuItemReview.builder().stars(stars).dateReviewed(LocalDateTime.parse(dateReviewed)).build();
+  }
+
+  @Test
+  void test_reviewAdded_adds_one_review_and_its_stars() {
+    rowsExist();
+    menuItemReviewStatsService.reviewAdded(review(4, "2022-01-03T12:00:00"));
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, 1, 4, 0, 0, 0, 1, 0);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(JAN_3, 1, 4);
+  }
+
+  @Test
+  void test_reviewsAdded_adds_a_whole_batch_with_one_update_per_day() {
+    rowsExist();
+    menuItemReviewStatsService.reviewsAdded(List.of(
+        review(5, "2022-01-03T08:00:00"),
+        review(5, "2022-01-03T20:00:00"),
+        review(1, "2022-01-04T12:00:00")));
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, 3, 11, 1, 0, 0, 0, 2);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(JAN_3, 2, 10);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(LocalDate.parse("2022-01-04"), 1, 1);
+  }
+
+  @Test
+  void test_reviewChanged_moves_the_review_between_star_counts_and_days() {
+    rowsExist();
+    menuItemReviewStatsService.reviewChanged(review(2, "2022-01-03T12:00:00"), review(5, "2022-01-04T12:00:00"));
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, 0, 3, 0, -1, 0, 0, 1);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(JAN_3, -1, -2);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(LocalDate.parse("2022-01-04"), 1, 5);
+  }
+
+  @Test
+  void test_reviewChanged_on_the_same_day_with_the_same_stars_leaves_the_day_alone() {
+    rowsExist();
+    menuItemReviewStatsService.reviewChanged(review(3, "2022-01-03T12:00:00"), review(3, "2022-01-03T13:00:00"));
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, 0, 0, 0, 0, 0, 0, 0);
+    verify(menuItemReviewDailyRollupRepository, times(0)).addToDay(any(), anyLong(), anyLong());
+  }
+
+  @Test
+  void test_reviewRemoved_subtracts_the_review() {
+    rowsExist();
+    menuItemReviewStatsService.reviewRemoved(review(3, "2022-01-03T12:00:00"));
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, -1, -3, 0, 0, -1, 0, 0);
+    verify(menuItemReviewDailyRollupRepository, times(1)).addToDay(JAN_3, -1, -3);
+  }
+
+  @Test
+  void test_stars_outside_one_to_five_are_counted_but_not_in_the_histogram() {
+    rowsExist();
+    menuItemReviewStatsService.reviewAdded(MenuItemReview.builder().stars(0).build());
+    verify(menuItemReviewStatsRepository, times(1)).addToTotals(1, 1, 0, 0, 0, 0, 0, 0);
+    verify(menuItemReviewDailyRollupRepository, times(0)).addToDay(any(), anyLong(), anyLong());
+  }
+
+  @Test
+  void test_missing_totals_row_is_rebuilt_from_the_reviews() {
+    // arrange
+    MenuItemReviewStats computed = MenuItemReviewStats.builder().id(1).reviewCount(1).starSum(4).fourStars(1).build();
+    when(menuItemReviewStatsRepository.computeTotals()).thenReturn(computed);
+    when(menuItemReviewDailyRollupRepository.addToDay(any(), anyLong(), anyLong())).thenReturn(1);
+
+    // act
+    menuItemReviewStatsService.reviewAdded(review(4, "2022-01-03T12:00:00"));
+
+    // assert
+    verify(menuItemReviewStatsRepository, times(1)).computeTotals();
+    verify(menuItemReviewStatsRepository, times(1)).save(computed);
+  }
+
+  @Test
+  void test_first_review_of_a_day_creates_the_day_from_the_reviews() {
+    // arrange
+    when(menuItemReviewStatsRepository.addToTotals(anyInt(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(),
+        anyLong(), anyLong())).thenReturn(1);
+    when(menuItemReviewRepository.totalsBetween(JAN_3.atStartOfDay(), JAN_3.plusDays(1).atStartOfDay()))
+        .thenReturn(new ReviewRollup(1, 4));
+
+    // act
+    menuItemReviewStatsService.reviewAdded(review(4, "2022-01-03T12:00:00"));
+
+    // assert
+    verify(menuItemReviewDailyRollupRepository, times(1)).save(MenuItemReviewDailyRollup.builder()
+        .dayReviewed(JAN_3)
+        .reviewCount(1)
+        .starSum(4)
+        .build());
+  }
+
+  @Test
+  void test_rebuild_recomputes_the_totals_and_every_day() {
+    // arrange
+    MenuItemReviewStats computed = MenuItemReviewStats.builder().id(1).reviewCount(2).starSum(6).build();
+    when(menuItemReviewStatsRepository.computeTotals()).thenReturn(computed);
+    when(menuItemReviewStatsRepository.save(computed)).thenReturn(computed);
+
+    // act
+    MenuItemReviewStats stats = menuItemReviewStatsService.rebuild();
+
+    // assert
+    assertEquals(computed, stats);
+    verify(menuItemReviewDailyRollupRepository, times(1)).deleteAllDays();
+    verify(menuItemReviewDailyRollupRepository, times(1)).insertAllDays();
+  }
+
+  @Test
+  void test_getStats_returns_the_stored_row() {
+    // arrange
+    MenuItemReviewStats stats = MenuItemReviewStats.builder().id(1).reviewCount(4).starSum(14).build();
+    when(menuItemReviewStatsRepository.findById(1)).thenReturn(Optional.of(stats));
+
+    // act and assert
+    assertEquals(stats, menuItemReviewStatsService.getStats());
+    assertEquals(3.5, stats.getAverageStars());
+    verify(menuItemReviewStatsRepository, times(0)).computeTotals();
+  }
+
+  @Test
+  void test_getStats_computes_the_totals_when_there_is_no_row() {
+    // arrange
+    MenuItemReviewStats empty = MenuItemReviewStats.builder().id(1).build();
+    when(menuItemReviewStatsRepository.findById(1)).thenReturn(Optional.empty());
+    when(menuItemReviewStatsRepository.computeTotals()).thenReturn(empty);
+
+    // act
+    MenuItemReviewStats stats = menuItemReviewStatsService.getStats();
+
+    // assert
+    assertEquals(empty, stats);
+    assertNull(stats.getAverageStars());
+  }
+
+  @Test
+  void test_getRollup_of_whole_days_reads_only_the_daily_rollups() {
+    // arrange
+    when(menuItemReviewDailyRollupRepository.findAllByDayReviewedBetween(JAN_3, LocalDate.parse("2022-01-09")))
+        .thenReturn(List.of(
+            new MenuItemReviewDailyRollup(JAN_3, 2, 8),
+            new MenuItemReviewDailyRollup(LocalDate.parse("2022-01-05"), 0, 0),
+            new MenuItemReviewDailyRollup(LocalDate.parse("2022-01-06"), 1, 1)));
+
+    // act
+    List<ReviewRollup> rollup = menuItemReviewStatsService.getRollup(
+        LocalDateTime.parse("2022-01-03T00:00:00"), LocalDateTime.parse("2022-01-10T00:00:00"), RollupBucket.DAY);
+
+    // assert
+    assertEquals(List.of(
+        new ReviewRollup(JAN_3, 2, 8),
+        new ReviewRollup(LocalDate.parse("2022-01-06"), 1, 1)), rollup);
+    verify(menuItemReviewRepository, times(0)).totalsBetween(any(), any());
+  }
+
+  @Test
+  void test_getRollup_counts_partial_days_from_the_reviews_and_groups_weeks() {
+    // arrange
+    LocalDateTime from = LocalDateTime.parse("2022-01-03T12:00:00");
+    LocalDateTime to = LocalDateTime.parse("2022-01-10T06:00:00");
+    when(menuItemReviewRepository.totalsBetween(from, LocalDateTime.parse("2022-01-04T00:00:00")))
+        .thenReturn(new ReviewRollup(1, 5));
+    when(menuItemReviewDailyRollupRepository.findAllByDayReviewedBetween(LocalDate.parse("2022-01-04"),
+        LocalDate.parse("2022-01-09"))).thenReturn(List.of(new MenuItemReviewDailyRollup(LocalDate.parse("2022-01-09"), 2, 3)));
+    when(menuItemReviewRepository.totalsBetween(LocalDateTime.parse("2022-01-10T00:00:00"), to))
+        .thenReturn(new ReviewRollup(1, 4));
+
+    // act
+    List<ReviewRollup> rollup = menuItemReviewStatsService.getRollup(from, to, RollupBucket.WEEK);
+
+    // assert
+    assertEquals(List.of(
+        new ReviewRollup(JAN_3, 3, 8),
+        new ReviewRollup(LocalDate.parse("2022-01-10"), 1, 4)), rollup);
+  }
+
+  @Test
+  void test_getRollup_within_one_day_counts_the_reviews_once() {
+    // arrange
+    LocalDateTime from = LocalDateTime.parse("2022-01-03T12:00:00");
+    LocalDateTime to = LocalDateTime.parse("2022-01-03T14:00:00");
+    when(menuItemReviewRepository.totalsBetween(from, to)).thenReturn(new ReviewRollup(2, 7));
+
+    // act
+    List<ReviewRollup> rollup = menuItemReviewStatsService.getRollup(from, to, RollupBucket.DAY);
+
+    // assert
+    assertEquals(List.of(new ReviewRollup(JAN_3, 2, 7)), rollup);
+    verify(menuItemReviewRepository, times(1)).totalsBetween(any(), any());
+    verify(menuItemReviewDailyRollupRepository, times(0)).findAllByDayReviewedBetween(any(), any());
+  }
+
+  @Test
+  void test_getRollup_of_an_empty_range_is_empty() {
+    LocalDateTime when = LocalDateTime.parse("2022-01-03T12:00:00");
+    assertEquals(List.of(), menuItemReviewStatsService.getRollup(when, when, RollupBucket.DAY));
+  }
+}
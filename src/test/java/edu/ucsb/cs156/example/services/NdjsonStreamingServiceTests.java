@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+@ExtendWith(SpringExtension.class)
+@Import({ NdjsonStreamingService.class, JacksonAutoConfiguration.class })
+class NdjsonStreamingServiceTests {
+
+  @MockBean
+  EntityManager entityManager;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  NdjsonStreamingService ndjsonStreamingService;
+
+  @Test
+  void test_stream_writes_one_object_per_line_and_detaches_each_row() throws Exception {
+    // arrange
+    UCSBDate ucsbDate1 = UCSBDate.builder()
+        .id(1L)
+        .name("firstDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+        .build();
+    UCSBDate ucsbDate2 = UCSBDate.builder()
+        .id(2L)
+        .name("lastDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00"))
+        .build();
+
+    // act
+    ResponseEntity<StreamingResponseBody> response = ndjsonStreamingService.stream(() -> Stream.of(ucsbDate1, ucsbDate2));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+
+    // assert
+    assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+    String expected = mapper.writeValueAsString(ucsbDate1) + "\n" + mapper.writeValueAsString(ucsbDate2) + "\n";
+    assertEquals(expected, out.toString());
+    verify(entityManager, times(1)).detach(ucsbDate1);
+    verify(entityManager, times(1)).detach(ucsbDate2);
+    verify(transactionManager, times(1)).commit(any());
+  }
+
+  @Test
+  void test_stream_of_no_rows_writes_nothing() throws Exception {
+    // act
+    ResponseEntity<StreamingResponseBody> response = ndjsonStreamingService.stream(Stream::empty);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+
+    // assert
+    assertEquals("", out.toString());
+  }
+}
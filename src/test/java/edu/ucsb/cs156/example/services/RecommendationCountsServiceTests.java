@@ -0,0 +1,147 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.entities.RecommendationCounts;
+import edu.ucsb.cs156.example.models.RecommendationInbox;
+import edu.ucsb.cs156.example.repositories.RecommendationCountsRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(RecommendationCountsService.class)
+class RecommendationCountsServiceTests {
+
+  @MockBean
+  RecommendationCountsRepository recommendationCountsRepository;
+
+  @MockBean
+  RecommendationRepository recommendationRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  RecommendationCountsService recommendationCountsService;
+
+  private void rowsExist() {
+    when(recommendationCountsRepository.addToCounts(anyString(), anyLong(), anyLong())).thenReturn(1);
+  }
+
+  private static Recommendation recommendation(String professorEmail, boolean done) {
+    return Recommendation.builder().professorEmail(professorEmail).done(done).build();
+  }
+
+  @Test
+  void test_recommendationAdded_adds_one_pending_request() {
+    rowsExist();
+    recommendationCountsService.recommendationAdded(recommendation("phtcon@ucsb.edu", false));
+    verify(recommendationCountsRepository, times(1)).addToCounts("phtcon@ucsb.edu", 1, 0);
+    verify(recommendationCountsRepository, times(0)).insertCounts(any());
+  }
+
+  @Test
+  void test_recommendationsAdded_adds_a_whole_batch_with_one_update_per_professor() {
+    rowsExist();
+    recommendationCountsService.recommendationsAdded(List.of(
+        recommendation("phtcon@ucsb.edu", false),
+        recommendation("richert@ucsb.edu", true),
+        recommendation("phtcon@ucsb.edu", true),
+        recommendation("phtcon@ucsb.edu", false)));
+    verify(recommendationCountsRepository, times(1)).addToCounts("phtcon@ucsb.edu", 2, 1);
+    verify(recommendationCountsRepository, times(1)).addToCounts("richert@ucsb.edu", 0, 1);
+  }
+
+  @Test
+  void test_recommendationChanged_moves_a_request_from_pending_to_done() {
+    rowsExist();
+    recommendationCountsService.recommendationChanged(recommendation("phtcon@ucsb.edu", false),
+        recommendation("phtcon@ucsb.edu", true));
+    verify(recommendationCountsRepository, times(1)).addToCounts("phtcon@ucsb.edu", -1, 1);
+  }
+
+  @Test
+  void test_recommendationChanged_moves_a_request_between_professors() {
+    rowsExist();
+    recommendationCountsService.recommendationChanged(recommendation("phtcon@ucsb.edu", false),
+        recommendation("richert@ucsb.edu", false));
+    verify(recommendationCountsRepository, times(1)).addToCounts("phtcon@ucsb.edu", -1, 0);
+    verify(recommendationCountsRepository, times(1)).addToCounts("richert@ucsb.edu", 1, 0);
+  }
+
+  @Test
+  void test_recommendationChanged_does_not_touch_the_counts_when_professor_and_done_are_unchanged() {
+    rowsExist();
+    recommendationCountsService.recommendationChanged(recommendation("phtcon@ucsb.edu", true),
+        recommendation("phtcon@ucsb.edu", true));
+    verify(recommendationCountsRepository, times(0)).addToCounts(anyString(), anyLong(), anyLong());
+  }
+
+  @Test
+  void test_recommendationRemoved_subtracts_the_request() {
+    rowsExist();
+    recommendationCountsService.recommendationRemoved(recommendation("phtcon@ucsb.edu", true));
+    verify(recommendationCountsRepository, times(1)).addToCounts("phtcon@ucsb.edu", 0, -1);
+  }
+
+  @Test
+  void test_requests_without_a_professor_are_not_counted() {
+    rowsExist();
+    recommendationCountsService.recommendationAdded(recommendation(null, false));
+    verify(recommendationCountsRepository, times(0)).addToCounts(any(), anyLong(), anyLong());
+  }
+
+  @Test
+  void test_a_missing_row_is_created_from_the_committed_requests_before_adding() {
+    when(recommendationCountsRepository.addToCounts(anyString(), anyLong(), anyLong())).thenReturn(0, 1);
+    recommendationCountsService.recommendationAdded(recommendation("phtcon@ucsb.edu", false));
+    verify(recommendationCountsRepository, times(1)).insertCounts("phtcon@ucsb.edu");
+    verify(recommendationCountsRepository, times(2)).addToCounts("phtcon@ucsb.edu", 1, 0);
+  }
+
+  @Test
+  void test_a_row_created_by_a_concurrent_request_is_added_to() {
+    when(recommendationCountsRepository.addToCounts(anyString(), anyLong(), anyLong())).thenReturn(0, 1);
+    when(recommendationCountsRepository.insertCounts("phtcon@ucsb.edu"))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+    recommendationCountsService.recommendationAdded(recommendation("phtcon@ucsb.edu", false));
+    verify(recommendationCountsRepository, times(2)).addToCounts("phtcon@ucsb.edu", 1, 0);
+  }
+
+  @Test
+  void test_getInbox_adds_the_overdue_count_to_the_stored_counts() {
+    when(recommendationCountsRepository.findById("phtcon@ucsb.edu"))
+        .thenReturn(Optional.of(new RecommendationCounts("phtcon@ucsb.edu", 4, 7)));
+    when(recommendationRepository.countByProfessorEmailAndDoneFalseAndDateNeededLessThan(eq("phtcon@ucsb.edu"),
+        any(LocalDateTime.class))).thenReturn(2L);
+    assertEquals(new RecommendationInbox("phtcon@ucsb.edu", 4, 7, 2),
+        recommendationCountsService.getInbox("phtcon@ucsb.edu"));
+  }
+
+  @Test
+  void test_getInbox_is_all_zeros_for_a_professor_with_no_requests() {
+    when(recommendationCountsRepository.findById("nobody@ucsb.edu")).thenReturn(Optional.empty());
+    assertEquals(new RecommendationInbox("nobody@ucsb.edu", 0, 0, 0),
+        recommendationCountsService.getInbox("nobody@ucsb.edu"));
+  }
+}
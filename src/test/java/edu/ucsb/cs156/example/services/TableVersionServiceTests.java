@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.TableVersion;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.TableVersionRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(TableVersionService.class)
+class TableVersionServiceTests {
+
+  @MockBean
+  TableVersionRepository tableVersionRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  TableVersionService tableVersionService;
+
+  @Test
+  void test_tables_are_named_as_in_the_database() {
+    assertEquals("articles", TableVersionService.tableName(Article.class));
+    assertEquals("ucsbdates", TableVersionService.tableName(UCSBDate.class));
+    assertEquals("String", TableVersionService.tableName(String.class));
+  }
+
+  @Test
+  void test_etag_is_the_table_and_its_version() {
+    when(tableVersionRepository.findById("articles")).thenReturn(Optional.of(new TableVersion("articles", 42)));
+    assertEquals("W/\"articles-42\"", tableVersionService.etag(Article.class));
+  }
+
+  @Test
+  void test_other_representations_have_their_own_etag() {
+    when(tableVersionRepository.findById("articles")).thenReturn(Optional.of(new TableVersion("articles", 42)));
+    assertEquals("W/\"articles-42-cbor\"", tableVersionService.etag(Article.class, "cbor"));
+  }
+
+  @Test
+  void test_a_table_that_was_never_written_is_at_version_0() {
+    when(tableVersionRepository.findById("articles")).thenReturn(Optional.empty());
+    assertEquals(0, tableVersionService.getVersion(Article.class));
+    assertEquals("W/\"articles-0\"", tableVersionService.etag(Article.class));
+  }
+
+  @Test
+  void test_a_request_reads_each_version_once_until_it_bumps_it() {
+    when(tableVersionRepository.findById("articles")).thenReturn(
+        Optional.of(new TableVersion("articles", 42)), Optional.of(new TableVersion("articles", 43)));
+    when(tableVersionRepository.bump("articles")).thenReturn(1);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    try {
+      assertEquals("W/\"articles-42\"", tableVersionService.etag(Article.class));
+      assertEquals(42, tableVersionService.getVersion(Article.class));
+      verify(tableVersionRepository, times(1)).findById("articles");
+
+      tableVersionService.bumped(Article.class);
+      assertEquals(43, tableVersionService.getVersion(Article.class));
+      verify(tableVersionRepository, times(2)).findById("articles");
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Test
+  void test_bumped_adds_one_to_an_existing_version() {
+    when(tableVersionRepository.bump("articles")).thenReturn(1);
+    tableVersionService.bumped(Article.class);
+    verify(tableVersionRepository, times(1)).bump("articles");
+    verify(tableVersionRepository, times(0)).insertVersion(anyString(), anyLong());
+  }
+
+  @Test
+  void test_first_write_creates_the_version_from_the_clock_then_bumps_it() {
+    long before = System.currentTimeMillis();
+    when(tableVersionRepository.bump("articles")).thenReturn(0, 1);
+    tableVersionService.bumped(Article.class);
+    verify(tableVersionRepository, times(2)).bump("articles");
+    verify(tableVersionRepository, times(1)).insertVersion(eq("articles"),
+        longThat(version -> version >= before));
+  }
+
+  @Test
+  void test_a_version_created_by_a_concurrent_request_is_bumped() {
+    when(tableVersionRepository.bump("articles")).thenReturn(0, 1);
+    when(tableVersionRepository.insertVersion(eq("articles"), anyLong()))
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+    tableVersionService.bumped(Article.class);
+    verify(tableVersionRepository, times(2)).bump("articles");
+  }
+}
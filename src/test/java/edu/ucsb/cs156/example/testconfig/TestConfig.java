@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.testconfig;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
+import edu.ucsb.cs156.example.services.AdminStatusCache;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 
@@ -18,4 +19,9 @@ public class TestConfig {
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();
     }
+
+    @Bean
+    public AdminStatusCache adminStatusCache() {
+        return new AdminStatusCache();
+    }
 }
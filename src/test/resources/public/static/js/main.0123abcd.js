@@ -0,0 +1,2 @@
+/* test fixture for StaticResourceConfigTests; main.0123abcd.js.gz is this file, gzipped */
+console.log("hello from a hashed bundle");